@@ -0,0 +1,53 @@
+package saasquatch.extintegration.jmh;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Random;
+
+/**
+ * Deterministic payloads shared by the benchmarks
+ */
+final class BenchmarkData {
+
+  private BenchmarkData() {}
+
+  /**
+   * @return a tenant payload with the given number of user records, each with a few scalars, a
+   *         nested object and an array of arrays
+   */
+  static ObjectNode tenantPayload(int records) {
+    final Random random = new Random(records);
+    final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+    final ArrayNode users = nodeFactory.arrayNode(records);
+    for (int i = 0; i < records; i++) {
+      final ObjectNode user = nodeFactory.objectNode()
+          .put("id", "user-" + i)
+          .put("accountId", "account-" + random.nextInt(1000))
+          .put("email", "user" + i + "@example.com")
+          .put("referralCount", random.nextInt(100))
+          .put("score", random.nextDouble())
+          .put("createdAt", 1_600_000_000_000L + random.nextInt())
+          .put("active", random.nextBoolean());
+      user.putNull("deletedAt");
+      user.putObject("customFields")
+          .put("plan", random.nextBoolean() ? "pro" : "free")
+          .put("seats", random.nextInt(50));
+      final ArrayNode segments = user.putArray("segments");
+      segments.addArray().add("segment-" + random.nextInt(10)).add(random.nextInt(10));
+      segments.addArray().add("segment-" + random.nextInt(10));
+      users.add(user);
+    }
+    final ObjectNode payload = nodeFactory.objectNode();
+    payload.put("tenantAlias", "test_tenant");
+    payload.set("users", users);
+    return payload;
+  }
+
+  static byte[] randomBytes(int size) {
+    final byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+}
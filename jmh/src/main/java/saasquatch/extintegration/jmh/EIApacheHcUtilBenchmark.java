@@ -0,0 +1,77 @@
+package saasquatch.extintegration.jmh;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.net.HttpHeaders;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saasquatch.extintegration.EIApacheHcUtil;
+import saasquatch.extintegration.EIJson;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EIApacheHcUtilBenchmark {
+
+  @Param({"identity", "gzip", "deflate"})
+  public String contentEncoding;
+
+  @Param({"10", "1000"})
+  public int records;
+
+  private SimpleHttpResponse response;
+
+  @Setup
+  public void setup() throws IOException {
+    final byte[] body = EIJson.toBytes(BenchmarkData.tenantPayload(records));
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (OutputStream out = encodingStream(encoded)) {
+      out.write(body);
+    }
+    response = new SimpleHttpResponse(200);
+    response.setBody(encoded.toByteArray(), ContentType.APPLICATION_JSON.withCharset(UTF_8));
+    response.addHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+  }
+
+  private OutputStream encodingStream(OutputStream out) throws IOException {
+    switch (contentEncoding) {
+      case "gzip":
+        return new GZIPOutputStream(out);
+      case "deflate":
+        return new DeflaterOutputStream(out);
+      default:
+        return out;
+    }
+  }
+
+  @Benchmark
+  public byte[] getBodyBytes() throws IOException {
+    return EIApacheHcUtil.getBodyBytes(response);
+  }
+
+  @Benchmark
+  public String getBodyText() throws IOException {
+    return EIApacheHcUtil.getBodyText(response);
+  }
+
+}
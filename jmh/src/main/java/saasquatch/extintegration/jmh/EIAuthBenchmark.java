@@ -0,0 +1,81 @@
+package saasquatch.extintegration.jmh;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saasquatch.extintegration.EIAuth;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EIAuthBenchmark {
+
+  private static final String INTEGRATION_NAME = "benchmark-integration";
+  private static final String CLIENT_SECRET = "benchmark-client-secret-at-least-256-bits-long";
+  private static final String JWT_ISSUER = "benchmark-issuer";
+
+  private Function<String, JWK> jwkFetcher;
+  private String tenantScopedToken;
+  private String accessKey;
+
+  @Setup
+  public void setup() throws Exception {
+    final RSAKey rsaKey = new RSAKeyGenerator(2048).keyID("benchmark-kid").generate();
+    final RSAKey publicKey = rsaKey.toPublicJWK();
+    jwkFetcher = kid -> publicKey.getKeyID().equals(kid) ? publicKey : null;
+    final SignedJWT jwt = new SignedJWT(
+        new JWSHeader.Builder(JWSAlgorithm.RS256)
+            .type(JOSEObjectType.JWT)
+            .keyID(rsaKey.getKeyID())
+            .build(),
+        new JWTClaimsSet.Builder()
+            .subject("test_tenant@tenants")
+            .claim("integration", INTEGRATION_NAME)
+            .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+            .build());
+    jwt.sign(new RSASSASigner(rsaKey));
+    tenantScopedToken = jwt.serialize();
+    accessKey = EIAuth.getAccessKey(jwkFetcher, INTEGRATION_NAME, CLIENT_SECRET, JWT_ISSUER,
+        tenantScopedToken).getRight();
+  }
+
+  @Benchmark
+  public Pair<Boolean, String> verifyTenantScopedToken() {
+    return EIAuth.verifyTenantScopedToken(jwkFetcher, INTEGRATION_NAME, tenantScopedToken);
+  }
+
+  @Benchmark
+  public Pair<Boolean, String> getAccessKey() {
+    return EIAuth.getAccessKey(jwkFetcher, INTEGRATION_NAME, CLIENT_SECRET, JWT_ISSUER,
+        tenantScopedToken);
+  }
+
+  @Benchmark
+  public String verifyAccessKey() {
+    return EIAuth.verifyAccessKey(CLIENT_SECRET, accessKey);
+  }
+
+}
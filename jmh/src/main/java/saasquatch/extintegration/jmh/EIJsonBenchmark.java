@@ -0,0 +1,132 @@
+package saasquatch.extintegration.jmh;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saasquatch.extintegration.EIJson;
+
+/**
+ * The tree based {@link EIJson} utilities next to their streaming, copy-on-write and direct
+ * variants. The *FromBytes benchmarks include parsing and serializing, to compare with the
+ * streaming variants that go from bytes to bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EIJsonBenchmark {
+
+  // Only touches a few leaves
+  private static final Function<ValueNode, JsonNode> MUTATION =
+      v -> "pro".equals(v.textValue()) ? TextNode.valueOf("PRO") : v;
+  private static final Function<ArrayNode, JsonNode> ARRAY_TRANSFORM =
+      a -> a.size() == 0 ? null : TextNode.valueOf(a.get(0).asText());
+
+  @Param({"10", "1000"})
+  public int records;
+
+  private ObjectNode payload;
+  private byte[] payloadBytes;
+  private Map<String, Object> payloadMap;
+
+  @Setup
+  public void setup() {
+    payload = BenchmarkData.tenantPayload(records);
+    payloadBytes = EIJson.toBytes(payload);
+    payloadMap = EIJson.toMap(payload);
+  }
+
+  @Benchmark
+  public JsonNode mutateValueNodesTree() {
+    return EIJson.mutateValueNodes(payload, MUTATION);
+  }
+
+  @Benchmark
+  public JsonNode mutateValueNodesCopyOnWrite() {
+    return EIJson.mutateValueNodesCopyOnWrite(payload, MUTATION);
+  }
+
+  @Benchmark
+  public byte[] mutateValueNodesTreeFromBytes() throws IOException {
+    return EIJson.toBytes(
+        EIJson.mutateValueNodes(EIJson.mapper().readTree(payloadBytes), MUTATION));
+  }
+
+  @Benchmark
+  public byte[] mutateValueNodesStreaming() {
+    return EIJson.mutateValueNodes(payloadBytes, MUTATION);
+  }
+
+  @Benchmark
+  public boolean hasArraysOfArraysTree() {
+    return EIJson.hasArraysOfArrays(payload);
+  }
+
+  @Benchmark
+  public boolean hasArraysOfArraysTreeFromBytes() throws IOException {
+    return EIJson.hasArraysOfArrays(EIJson.mapper().readTree(payloadBytes));
+  }
+
+  @Benchmark
+  public boolean hasArraysOfArraysStreaming() {
+    return EIJson.hasArraysOfArrays(payloadBytes);
+  }
+
+  @Benchmark
+  public byte[] replaceArraysOfArraysTreeFromBytes() throws IOException {
+    final JsonNode json = EIJson.mapper().readTree(payloadBytes);
+    EIJson.replaceArraysOfArrays(json, ARRAY_TRANSFORM);
+    return EIJson.toBytes(json);
+  }
+
+  @Benchmark
+  public byte[] replaceArraysOfArraysStreaming() {
+    return EIJson.replaceArraysOfArrays(payloadBytes, ARRAY_TRANSFORM);
+  }
+
+  @Benchmark
+  public Map<String, Object> toMap() {
+    return EIJson.toMap(payload);
+  }
+
+  /**
+   * Baseline for {@link #toMap()}, using the previous implementation
+   */
+  @Benchmark
+  public Map<String, Object> toMapConvertValue() {
+    return EIJson.mapper().convertValue(payload,
+        new TypeReference<LinkedHashMap<String, Object>>() {});
+  }
+
+  @Benchmark
+  public ObjectNode toObjectNode() {
+    return EIJson.toObjectNode(payloadMap);
+  }
+
+  @Benchmark
+  public String stringify() {
+    return EIJson.stringify(payload);
+  }
+
+}
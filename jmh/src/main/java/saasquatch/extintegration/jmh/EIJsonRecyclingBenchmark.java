@@ -0,0 +1,66 @@
+package saasquatch.extintegration.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import saasquatch.extintegration.EIJson;
+
+/**
+ * Compares the {@link EIJson.BufferRecycling} strategies. Look at gc.alloc.rate.norm to see how
+ * much each one saves per operation, and at the score for the pool contention cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EIJsonRecyclingBenchmark {
+
+  @Param
+  public EIJson.BufferRecycling bufferRecycling;
+
+  @Param({"10", "1000"})
+  public int records;
+
+  private ObjectMapper mapper;
+  private byte[] payloadBytes;
+  private JsonNode payload;
+
+  @Setup
+  public void setup() {
+    mapper = EIJson.newDefaultMapper(bufferRecycling);
+    payload = BenchmarkData.tenantPayload(records);
+    payloadBytes = EIJson.toBytes(payload);
+  }
+
+  @Benchmark
+  public JsonNode readTree() throws IOException {
+    return mapper.readTree(payloadBytes);
+  }
+
+  @Benchmark
+  public byte[] writeValueAsBytes() throws IOException {
+    return mapper.writeValueAsBytes(payload);
+  }
+
+  @Benchmark
+  public String writeValueAsString() throws IOException {
+    return mapper.writeValueAsString(payload);
+  }
+
+}
@@ -0,0 +1,74 @@
+package saasquatch.extintegration.jmh;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import saasquatch.extintegration.EIIOBundle;
+import saasquatch.extintegration.EISquatchAuth;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EISquatchAuthBenchmark {
+
+  @Param({"1024", "65536", "1048576"})
+  public int bodySize;
+
+  private EIIOBundle ioBundle;
+  private EISquatchAuth squatchAuth;
+  private byte[] bodyBytes;
+  private String sigHeader;
+
+  @Setup
+  public void setup() throws Exception {
+    final RSAKey rsaKey = new RSAKeyGenerator(2048).keyID("benchmark-kid").generate();
+    final RSAKey publicKey = rsaKey.toPublicJWK();
+    ioBundle = new EIIOBundle(Runnable::run);
+    // Serve the JWK without going through the network
+    squatchAuth = new EISquatchAuth(ioBundle, false, "localhost", "benchmark-client-id",
+        "benchmark-client-secret", "benchmark-audience", "http://localhost/oauth/token") {
+      @Override
+      public JWK getCachedJwkForKid(String kid) {
+        return publicKey.getKeyID().equals(kid) ? publicKey : null;
+      }
+    };
+    bodyBytes = BenchmarkData.randomBytes(bodySize);
+    final JWSObject jws = new JWSObject(
+        new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).build(),
+        new Payload(bodyBytes));
+    jws.sign(new RSASSASigner(rsaKey));
+    sigHeader = jws.serialize(true);
+  }
+
+  @TearDown
+  public void tearDown() {
+    ioBundle.close();
+  }
+
+  @Benchmark
+  public String validateSquatchWebhook() {
+    return squatchAuth.validateSquatchWebhook(sigHeader, bodyBytes);
+  }
+
+}
@@ -0,0 +1,332 @@
+package saasquatch.extintegration.loadtest;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hc.core5.pool.PoolStats;
+import saasquatch.extintegration.EIIOBundle;
+import saasquatch.extintegration.EISquatchAuth;
+import saasquatch.extintegration.EIWarmUpResult;
+
+/**
+ * Closed loop load test of {@link EISquatchAuth} against an {@link EIStubServer}. Every worker
+ * thread issues one call at a time for the configured duration, after an unrecorded warm up
+ * period. Reports throughput, latency percentiles, errors and async connection pool usage.
+ * <p>
+ * Options are passed as {@code --name=value}; see {@link Options} for names and defaults.
+ */
+public class EILoadDriver {
+
+  private static final String QUERY = "query users($limit: Int!) { users(limit: $limit) {"
+      + " totalCount data { id accountId email firstName lastName customFields } } }";
+
+  public static void main(String[] args) throws Exception {
+    final Options options = Options.parse(args);
+    System.out.println(options);
+    final ExecutorService executor = Executors.newFixedThreadPool(options.executorThreads);
+    try (EIStubServer stubServer = new EIStubServer();
+        EIIOBundle ioBundle = new EIIOBundle(executor)) {
+      stubServer.setLatency(options.latencyMs, options.jitterMs);
+      stubServer.setGzip(options.gzip);
+      stubServer.setGraphQLRecords(options.records);
+      stubServer.start();
+      ioBundle.start();
+      final EISquatchAuth squatchAuth = new EISquatchAuth(ioBundle, false,
+          stubServer.getAppDomain(), "stub-client-id", "stub-client-secret", "stub-audience",
+          stubServer.getTokenUrl(), Duration.ofMinutes(1),
+          EISquatchAuth.DEFAULT_INTEGRATION_CACHE_MAXIMUM_SIZE, stubServer.getApiBaseUrl());
+      final EIWarmUpResult warmUpResult = squatchAuth
+          .warmUp(Collections.emptyList(), Math.min(options.concurrency, 100))
+          .toCompletableFuture().join();
+      System.out.println(warmUpResult);
+      // Errors are only injected once the client is warm
+      stubServer.setErrorStatus(options.errorStatus);
+      stubServer.setErrorRate(options.errorRate);
+      runPhase(options, squatchAuth, ioBundle, options.warmup);
+      final long requestsBefore = stubServer.getRequestCount();
+      final long errorsBefore = stubServer.getErrorCount();
+      final Result result = runPhase(options, squatchAuth, ioBundle, options.duration);
+      result.serverRequests = stubServer.getRequestCount() - requestsBefore;
+      result.serverErrors = stubServer.getErrorCount() - errorsBefore;
+      System.out.println(result.report());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Result runPhase(Options options, EISquatchAuth squatchAuth, EIIOBundle ioBundle,
+      Duration duration) throws InterruptedException {
+    final Result result = new Result(duration);
+    if (duration.isZero()) {
+      return result;
+    }
+    final long endNanos = System.nanoTime() + duration.toNanos();
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final Thread poolSampler = new Thread(() -> {
+      while (running.get()) {
+        result.samplePool(ioBundle.getAsyncPoolStats());
+        try {
+          TimeUnit.MILLISECONDS.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }, "ei-loadtest-pool-sampler");
+    poolSampler.setDaemon(true);
+    poolSampler.start();
+    final List<Thread> workers = new ArrayList<>(options.concurrency);
+    final Worker[] workerStates = new Worker[options.concurrency];
+    for (int i = 0; i < options.concurrency; i++) {
+      final Worker worker = new Worker();
+      workerStates[i] = worker;
+      final Thread thread = new Thread(() -> {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < endNanos) {
+          final String tenantAlias = "tenant" + random.nextInt(options.tenants);
+          final long startNanos = System.nanoTime();
+          try {
+            options.operation.call(squatchAuth, tenantAlias).toCompletableFuture().join();
+          } catch (RuntimeException e) {
+            worker.errors++;
+          }
+          worker.record(System.nanoTime() - startNanos);
+        }
+      }, "ei-loadtest-worker-" + i);
+      thread.setDaemon(true);
+      workers.add(thread);
+      thread.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    running.set(false);
+    poolSampler.interrupt();
+    poolSampler.join();
+    result.complete(workerStates);
+    return result;
+  }
+
+  public enum Operation {
+    graphQL {
+      @Override
+      CompletionStage<?> call(EISquatchAuth squatchAuth, String tenantAlias) {
+        return squatchAuth.graphQL(tenantAlias, QUERY, null,
+            JsonNodeFactory.instance.objectNode().put("limit", 10));
+      }
+    },
+    loadIntegration {
+      @Override
+      CompletionStage<?> call(EISquatchAuth squatchAuth, String tenantAlias) {
+        return squatchAuth.loadIntegration(tenantAlias);
+      }
+    },
+    cachedIntegration {
+      @Override
+      CompletionStage<?> call(EISquatchAuth squatchAuth, String tenantAlias) {
+        return squatchAuth.getCachedIntegration(tenantAlias);
+      }
+    },
+    updateIntegrationConfig {
+      @Override
+      CompletionStage<?> call(EISquatchAuth squatchAuth, String tenantAlias) {
+        return squatchAuth.updateIntegrationConfig(tenantAlias,
+            JsonNodeFactory.instance.objectNode().put("lastSync", System.currentTimeMillis()));
+      }
+    };
+
+    abstract CompletionStage<?> call(EISquatchAuth squatchAuth, String tenantAlias);
+
+  }
+
+  static final class Options {
+
+    int concurrency = 64;
+    Duration duration = Duration.ofSeconds(30);
+    Duration warmup = Duration.ofSeconds(5);
+    Operation operation = Operation.graphQL;
+    int tenants = 100;
+    long latencyMs = 5;
+    long jitterMs = 5;
+    double errorRate = 0;
+    int errorStatus = 500;
+    boolean gzip = true;
+    int records = 10;
+    int executorThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    static Options parse(String[] args) {
+      final Map<String, String> values = new HashMap<>();
+      for (String arg : args) {
+        if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+          throw new IllegalArgumentException(String.format(Locale.ROOT,
+              "Invalid argument[%s]. Expected --name=value", arg));
+        }
+        final int eq = arg.indexOf('=');
+        values.put(arg.substring(2, eq), arg.substring(eq + 1));
+      }
+      final Options options = new Options();
+      for (Map.Entry<String, String> e : values.entrySet()) {
+        final String value = e.getValue();
+        switch (e.getKey()) {
+          case "concurrency":
+            options.concurrency = Integer.parseInt(value);
+            break;
+          case "duration":
+            options.duration = Duration.ofSeconds(Long.parseLong(value));
+            break;
+          case "warmup":
+            options.warmup = Duration.ofSeconds(Long.parseLong(value));
+            break;
+          case "operation":
+            options.operation = Operation.valueOf(value);
+            break;
+          case "tenants":
+            options.tenants = Integer.parseInt(value);
+            break;
+          case "latencyMs":
+            options.latencyMs = Long.parseLong(value);
+            break;
+          case "jitterMs":
+            options.jitterMs = Long.parseLong(value);
+            break;
+          case "errorRate":
+            options.errorRate = Double.parseDouble(value);
+            break;
+          case "errorStatus":
+            options.errorStatus = Integer.parseInt(value);
+            break;
+          case "gzip":
+            options.gzip = Boolean.parseBoolean(value);
+            break;
+          case "records":
+            options.records = Integer.parseInt(value);
+            break;
+          case "executorThreads":
+            options.executorThreads = Integer.parseInt(value);
+            break;
+          default:
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                "Unknown option[%s]. Known options: %s", e.getKey(), Arrays.asList(
+                    "concurrency", "duration", "warmup", "operation", "tenants", "latencyMs",
+                    "jitterMs", "errorRate", "errorStatus", "gzip", "records",
+                    "executorThreads")));
+        }
+      }
+      return options;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+          "operation=%s concurrency=%d duration=%ss warmup=%ss tenants=%d latencyMs=%d"
+              + " jitterMs=%d errorRate=%s errorStatus=%d gzip=%s records=%d"
+              + " executorThreads=%d",
+          operation, concurrency, duration.getSeconds(), warmup.getSeconds(), tenants,
+          latencyMs, jitterMs, errorRate, errorStatus, gzip, records, executorThreads);
+    }
+
+  }
+
+  /**
+   * Latencies and errors of a single worker thread, so recording needs no synchronization
+   */
+  private static final class Worker {
+
+    long[] latencies = new long[1024];
+    int count;
+    long errors;
+
+    void record(long latencyNanos) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latencyNanos;
+    }
+
+  }
+
+  private static final class Result {
+
+    final Duration duration;
+    long[] latencies = new long[0];
+    long errors;
+    long serverRequests;
+    long serverErrors;
+    // Only written by the pool sampler thread
+    volatile int maxLeased;
+    volatile int maxPending;
+    volatile int maxConnections;
+    volatile long leasedSum;
+    volatile long pendingSum;
+    volatile int samples;
+
+    Result(Duration duration) {
+      this.duration = duration;
+    }
+
+    void samplePool(PoolStats poolStats) {
+      maxLeased = Math.max(maxLeased, poolStats.getLeased());
+      maxPending = Math.max(maxPending, poolStats.getPending());
+      maxConnections = poolStats.getMax();
+      leasedSum += poolStats.getLeased();
+      pendingSum += poolStats.getPending();
+      samples++;
+    }
+
+    void complete(Worker[] workers) {
+      int total = 0;
+      for (Worker worker : workers) {
+        total += worker.count;
+        errors += worker.errors;
+      }
+      latencies = new long[total];
+      int offset = 0;
+      for (Worker worker : workers) {
+        System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+        offset += worker.count;
+      }
+      Arrays.sort(latencies);
+    }
+
+    String report() {
+      final double seconds = duration.toNanos() / 1e9;
+      final StringBuilder sb = new StringBuilder();
+      sb.append(String.format(Locale.ROOT,
+          "calls=%d errors=%d (%.2f%%) throughput=%.1f/s serverRequests=%d"
+              + " serverErrors=%d%n",
+          latencies.length, errors,
+          latencies.length == 0 ? 0.0 : errors * 100.0 / latencies.length,
+          latencies.length / seconds, serverRequests, serverErrors));
+      sb.append(String.format(Locale.ROOT,
+          "latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+          percentileMillis(0.5), percentileMillis(0.9), percentileMillis(0.99),
+          percentileMillis(0.999), percentileMillis(1)));
+      sb.append(String.format(Locale.ROOT,
+          "async pool: max=%d leased avg=%.1f peak=%d pending avg=%.1f peak=%d",
+          maxConnections, samples == 0 ? 0.0 : (double) leasedSum / samples, maxLeased,
+          samples == 0 ? 0.0 : (double) pendingSum / samples, maxPending));
+      return sb.toString();
+    }
+
+    private double percentileMillis(double percentile) {
+      if (latencies.length == 0) {
+        return 0;
+      }
+      final int index = Math.max(0, (int) Math.ceil(percentile * latencies.length) - 1);
+      return latencies[index] / 1e6;
+    }
+
+  }
+
+}
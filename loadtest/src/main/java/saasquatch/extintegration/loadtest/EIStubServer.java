@@ -0,0 +1,268 @@
+package saasquatch.extintegration.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import saasquatch.extintegration.EIJson;
+
+/**
+ * An in-process stand-in for the SaaSquatch endpoints used by
+ * {@link saasquatch.extintegration.EISquatchAuth}, with configurable latency, jitter, error rate
+ * and gzip. Listens on the loopback interface over plain http.
+ */
+public class EIStubServer implements Closeable {
+
+  public static final String TOKEN_PATH = "/oauth/token";
+
+  private static final Pattern INTEGRATION_PATTERN =
+      Pattern.compile("^/api/v1/([^/]+)/integration(?:/([^/]+))?$");
+  private static final Pattern GRAPHQL_PATTERN = Pattern.compile("^/api/v1/([^/]+)/graphql$");
+
+  private final HttpServer server;
+  private final byte[] jwksBytes;
+  private final byte[] tokenBytes;
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private volatile long latencyMillis;
+  private volatile long jitterMillis;
+  private volatile double errorRate;
+  private volatile int errorStatus = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+  private volatile boolean gzip = true;
+  private volatile byte[] graphQLBytes;
+
+  public EIStubServer() {
+    this.server = ServerBootstrap.bootstrap()
+        .setLocalAddress(InetAddress.getLoopbackAddress())
+        .setListenerPort(0)
+        .setSocketConfig(SocketConfig.custom()
+            .setSoTimeout(Timeout.ofSeconds(30))
+            .setTcpNoDelay(true)
+            .setBacklogSize(1024)
+            .build())
+        .register("*", this::handle)
+        .create();
+    final RSAKey signingKey;
+    try {
+      signingKey = new RSAKeyGenerator(2048).keyID("stub").generate();
+    } catch (JOSEException e) {
+      throw new RuntimeException(e);
+    }
+    this.jwksBytes = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(UTF_8);
+    this.tokenBytes = EIJson.toBytes(JsonNodeFactory.instance.objectNode()
+        .put("access_token", "stub-access-token")
+        .put("token_type", "Bearer")
+        .put("expires_in", 86400));
+    setGraphQLRecords(10);
+  }
+
+  public void start() {
+    try {
+      server.start();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  public int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * @return the app domain to use with {@code https} set to false, along with
+   *         {@link #getApiBaseUrl()}
+   */
+  public String getAppDomain() {
+    return "127.0.0.1:" + getPort();
+  }
+
+  /**
+   * @return the plain http API base URL to pass to {@code EISquatchAuth}
+   */
+  public String getApiBaseUrl() {
+    return "http://" + getAppDomain();
+  }
+
+  public String getTokenUrl() {
+    return "http://" + getAppDomain() + TOKEN_PATH;
+  }
+
+  public void setLatency(long latencyMillis, long jitterMillis) {
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+  }
+
+  /**
+   * @param errorRate the fraction of requests answered with the error status
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * @param errorStatus the status of injected errors, 500 by default. Note that the client retries
+   *        429 and 503, so those only surface as errors once the retries are exhausted.
+   */
+  public void setErrorStatus(int errorStatus) {
+    this.errorStatus = errorStatus;
+  }
+
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+
+  /**
+   * @param records the number of user records in every GraphQL response
+   */
+  public void setGraphQLRecords(int records) {
+    final ArrayNode users = JsonNodeFactory.instance.arrayNode();
+    for (int i = 0; i < records; i++) {
+      final ObjectNode user = users.addObject()
+          .put("id", "user-" + i)
+          .put("accountId", "account-" + i)
+          .put("email", "user" + i + "@example.com")
+          .put("firstName", "First" + i)
+          .put("lastName", "Last" + i);
+      user.putObject("customFields")
+          .put("plan", i % 2 == 0 ? "pro" : "free")
+          .put("score", i * 7);
+    }
+    final ObjectNode respJson = JsonNodeFactory.instance.objectNode();
+    respJson.putObject("data").putObject("users")
+        .put("totalCount", records)
+        .set("data", users);
+    this.graphQLBytes = EIJson.toBytes(respJson);
+  }
+
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  private void handle(ClassicHttpRequest request, ClassicHttpResponse response,
+      HttpContext context) throws IOException {
+    requestCount.increment();
+    // Read the body up front so the connection can be reused
+    final byte[] reqBodyBytes = request.getEntity() == null
+        ? new byte[0] : EntityUtils.toByteArray(request.getEntity());
+    simulateLatency();
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      errorCount.increment();
+      respond(request, response, errorStatus,
+          "{\"message\":\"stub error\"}".getBytes(UTF_8));
+      return;
+    }
+    final String method = request.getMethod();
+    final String path = request.getPath().split("\\?", 2)[0];
+    if (path.equals("/.well-known/jwks.json")
+        && (method.equals("GET") || method.equals("HEAD"))) {
+      respond(request, response, HttpStatus.SC_OK, jwksBytes);
+      return;
+    }
+    if (path.equals(TOKEN_PATH) && method.equals("POST")) {
+      respond(request, response, HttpStatus.SC_OK, tokenBytes);
+      return;
+    }
+    final Matcher integrationMatcher = INTEGRATION_PATTERN.matcher(path);
+    if (integrationMatcher.matches()) {
+      final String tenantAlias = integrationMatcher.group(1);
+      if (method.equals("GET") && integrationMatcher.group(2) != null) {
+        final ObjectNode integration = JsonNodeFactory.instance.objectNode()
+            .put("enabled", true);
+        integration.putObject("config")
+            .put("tenantAlias", tenantAlias)
+            .put("apiKey", "stub-api-key")
+            .putObject("fieldMappings")
+            .put("email", "email")
+            .put("firstName", "first_name");
+        respond(request, response, HttpStatus.SC_OK, EIJson.toBytes(integration));
+        return;
+      }
+      if (method.equals("PUT") && integrationMatcher.group(2) == null) {
+        respond(request, response, HttpStatus.SC_OK, reqBodyBytes);
+        return;
+      }
+    }
+    if (GRAPHQL_PATTERN.matcher(path).matches() && method.equals("POST")) {
+      respond(request, response, HttpStatus.SC_OK, graphQLBytes);
+      return;
+    }
+    respond(request, response, HttpStatus.SC_NOT_FOUND, String.format(Locale.ROOT,
+        "{\"message\":\"%s %s not found\"}", method, path).getBytes(UTF_8));
+  }
+
+  private void respond(ClassicHttpRequest request, ClassicHttpResponse response, int status,
+      byte[] bodyBytes) throws IOException {
+    response.setCode(status);
+    byte[] respBytes = bodyBytes;
+    if (gzip && acceptsGzip(request)) {
+      final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(bodyBytes.length / 2 + 32);
+      try (GZIPOutputStream gzipOut = new GZIPOutputStream(bytesOut)) {
+        gzipOut.write(bodyBytes);
+      }
+      respBytes = bytesOut.toByteArray();
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    response.setEntity(new ByteArrayEntity(respBytes, ContentType.APPLICATION_JSON));
+  }
+
+  private static boolean acceptsGzip(ClassicHttpRequest request) {
+    final Header acceptEncoding = request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null
+        && acceptEncoding.getValue().toLowerCase(Locale.ROOT).contains("gzip");
+  }
+
+  private void simulateLatency() {
+    final long jitter = jitterMillis;
+    final long sleepMillis = latencyMillis
+        + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    if (sleepMillis <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.MILLISECONDS.sleep(sleepMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
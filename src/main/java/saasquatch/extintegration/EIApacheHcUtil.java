@@ -14,15 +14,19 @@ import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.DeflateInputStream;
+import org.apache.hc.client5.http.impl.ChainElement;
 import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
 import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.NameValuePair;
@@ -53,16 +57,51 @@ public class EIApacheHcUtil {
   }
 
   public static CloseableHttpAsyncClient newAsyncClient() {
+    return newAsyncClient(newAsyncConnectionManager());
+  }
+
+  public static PoolingAsyncClientConnectionManager newAsyncConnectionManager() {
+    return PoolingAsyncClientConnectionManagerBuilder.create()
+        .setMaxConnPerRoute(100) // default is 2
+        .setMaxConnTotal(200) // default is 20
+        .build();
+  }
+
+  public static CloseableHttpAsyncClient newAsyncClient(
+      PoolingAsyncClientConnectionManager connectionManager) {
     return HttpAsyncClients.custom()
         .disableCookieManagement()
         .setDefaultRequestConfig(defaultRequestConfig)
-        .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
-            .setMaxConnPerRoute(100) // default is 2
-            .setMaxConnTotal(200) // default is 20
-            .build())
+        .setConnectionManager(connectionManager)
+        .addExecInterceptorAfter(ChainElement.CONNECT.name(), "ei-span",
+            (request, entityProducer, scope, chain, asyncExecCallback) -> {
+              final Object span = scope.clientContext.getAttribute(EISpan.CONTEXT_ATTRIBUTE);
+              if (span instanceof EISpan) {
+                ((EISpan) span).mark(EISpan.Phase.CONNECTED);
+              }
+              chain.proceed(request, entityProducer, scope, asyncExecCallback);
+            })
         .build();
   }
 
+  /**
+   * Execute a request with the async client, making the given span available to the exec chain
+   * of clients created by {@link #newAsyncClient()}.
+   */
+  public static CompletableFuture<SimpleHttpResponse> execute(CloseableHttpAsyncClient client,
+      SimpleHttpRequest request, EISpan span) {
+    final CompletableFuture<SimpleHttpResponse> cf = new CompletableFuture<>();
+    if (span == EISpan.NOOP) {
+      client.execute(request, completableFuture(cf));
+      return cf;
+    }
+    cf.whenComplete((resp, ex) -> span.mark(EISpan.Phase.RESPONSE_RECEIVED));
+    final HttpClientContext context = HttpClientContext.create();
+    context.setAttribute(EISpan.CONTEXT_ATTRIBUTE, span);
+    client.execute(request, context, completableFuture(cf));
+    return cf;
+  }
+
   /**
    * @return a {@link FutureCallback} that will populate the given {@link CompletableFuture}.
    */
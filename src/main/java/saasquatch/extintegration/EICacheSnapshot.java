@@ -0,0 +1,150 @@
+package saasquatch.extintegration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A point in time copy of the {@link EISquatchAuth} caches, stored as a gzipped binary file. The
+ * file contains the access token, so it is created readable by its owner only where supported.
+ */
+public final class EICacheSnapshot {
+
+  private static final int MAGIC = 0x45494353; // EICS
+  private static final int VERSION = 1;
+
+  @Nullable
+  private final String accessToken;
+  // kid -> JWK JSON
+  private final Map<String, String> jwks;
+  // tenantAlias -> integration
+  private final Map<String, JsonNode> integrations;
+
+  public EICacheSnapshot(@Nullable String accessToken, Map<String, String> jwks,
+      Map<String, JsonNode> integrations) {
+    this.accessToken = accessToken;
+    this.jwks = Collections.unmodifiableMap(new LinkedHashMap<>(jwks));
+    this.integrations = Collections.unmodifiableMap(new LinkedHashMap<>(integrations));
+  }
+
+  @Nullable
+  public String getAccessToken() {
+    return accessToken;
+  }
+
+  public Map<String, String> getJwks() {
+    return jwks;
+  }
+
+  public Map<String, JsonNode> getIntegrations() {
+    return integrations;
+  }
+
+  /**
+   * Atomically replace the given file with this snapshot.
+   */
+  public void writeTo(Path file) throws IOException {
+    final Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    final Path tempFile = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    try {
+      try {
+        Files.setPosixFilePermissions(tempFile, PosixFilePermissions.fromString("rw-------"));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system
+      }
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeBytes(out, accessToken == null ? null : accessToken.getBytes(UTF_8));
+        out.writeInt(jwks.size());
+        for (Map.Entry<String, String> e : jwks.entrySet()) {
+          writeBytes(out, e.getKey().getBytes(UTF_8));
+          writeBytes(out, e.getValue().getBytes(UTF_8));
+        }
+        out.writeInt(integrations.size());
+        for (Map.Entry<String, JsonNode> e : integrations.entrySet()) {
+          writeBytes(out, e.getKey().getBytes(UTF_8));
+          writeBytes(out, EIJson.toBytes(e.getValue()));
+        }
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * @return the snapshot in the given file, or null if the file does not exist
+   */
+  @Nullable
+  public static EICacheSnapshot readFrom(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a cache snapshot: " + file);
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported cache snapshot version: " + version);
+      }
+      final byte[] accessTokenBytes = readBytes(in);
+      final int jwkCount = in.readInt();
+      final Map<String, String> jwks = new LinkedHashMap<>();
+      for (int i = 0; i < jwkCount; i++) {
+        jwks.put(new String(readBytes(in), UTF_8), new String(readBytes(in), UTF_8));
+      }
+      final int integrationCount = in.readInt();
+      final Map<String, JsonNode> integrations = new LinkedHashMap<>();
+      for (int i = 0; i < integrationCount; i++) {
+        integrations.put(new String(readBytes(in), UTF_8),
+            EIJson.mapper().readTree(readBytes(in)));
+      }
+      return new EICacheSnapshot(
+          accessTokenBytes == null ? null : new String(accessTokenBytes, UTF_8),
+          jwks, integrations);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, @Nullable byte[] bytes)
+      throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,155 @@
+package saasquatch.extintegration;
+
+import javax.annotation.Nullable;
+
+/**
+ * Minimal scanner for the top level definitions of a GraphQL document. Only skips comments,
+ * strings and nested braces; it does not validate the document.
+ */
+final class EIGraphQLOperations {
+
+  static final String QUERY = "query";
+  static final String MUTATION = "mutation";
+  static final String SUBSCRIPTION = "subscription";
+
+  private EIGraphQLOperations() {}
+
+  /**
+   * @return the type of the operation that would be executed for the given document and operation
+   *         name, or null if it cannot be determined, e.g. when the document has several
+   *         operations and no operation name is given
+   */
+  @Nullable
+  static String operationType(String document, @Nullable String operationName) {
+    final int length = document.length();
+    String selectedType = null;
+    int operationCount = 0;
+    int braceDepth = 0;
+    int parenDepth = 0;
+    boolean expectingDefinition = true;
+    int i = 0;
+    while (i < length) {
+      final char c = document.charAt(i);
+      if (c == '#') {
+        while (i < length && document.charAt(i) != '\n' && document.charAt(i) != '\r') {
+          i++;
+        }
+      } else if (c == '"') {
+        i = skipString(document, i);
+      } else if (c == '(') {
+        parenDepth++;
+        i++;
+      } else if (c == ')') {
+        parenDepth = Math.max(0, parenDepth - 1);
+        i++;
+      } else if (c == '{' && parenDepth == 0) {
+        if (braceDepth == 0 && expectingDefinition) {
+          // Query shorthand
+          operationCount++;
+          if (operationName == null) {
+            selectedType = QUERY;
+          }
+          expectingDefinition = false;
+        }
+        braceDepth++;
+        i++;
+      } else if (c == '}' && parenDepth == 0) {
+        braceDepth = Math.max(0, braceDepth - 1);
+        if (braceDepth == 0) {
+          expectingDefinition = true;
+        }
+        i++;
+      } else if (isNameStart(c)) {
+        final int nameEnd = nameEnd(document, i);
+        if (braceDepth == 0 && parenDepth == 0 && expectingDefinition) {
+          final String keyword = document.substring(i, nameEnd);
+          expectingDefinition = false;
+          if (keyword.equals(QUERY) || keyword.equals(MUTATION)
+              || keyword.equals(SUBSCRIPTION)) {
+            operationCount++;
+            final int nameStart = skipIgnored(document, nameEnd);
+            final String name = nameStart < length && isNameStart(document.charAt(nameStart))
+                ? document.substring(nameStart, nameEnd(document, nameStart)) : null;
+            if (operationName == null ? selectedType == null : operationName.equals(name)) {
+              selectedType = keyword;
+            }
+          }
+        }
+        i = nameEnd;
+      } else {
+        i++;
+      }
+    }
+    if (operationName == null && operationCount > 1) {
+      return null;
+    }
+    return selectedType;
+  }
+
+  private static int skipString(String document, int start) {
+    final int length = document.length();
+    if (document.startsWith("\"\"\"", start)) {
+      int i = start + 3;
+      while (i < length) {
+        if (document.startsWith("\\\"\"\"", i)) {
+          i += 4;
+        } else if (document.startsWith("\"\"\"", i)) {
+          return i + 3;
+        } else {
+          i++;
+        }
+      }
+      return length;
+    }
+    int i = start + 1;
+    while (i < length) {
+      final char c = document.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == '"' || c == '\n' || c == '\r') {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Skip whitespace, commas and comments
+   */
+  private static int skipIgnored(String document, int start) {
+    final int length = document.length();
+    int i = start;
+    while (i < length) {
+      final char c = document.charAt(i);
+      if (c == '#') {
+        while (i < length && document.charAt(i) != '\n' && document.charAt(i) != '\r') {
+          i++;
+        }
+      } else if (Character.isWhitespace(c) || c == ',' || c == '\uFEFF') {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  private static boolean isNameStart(char c) {
+    return c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  private static int nameEnd(String document, int start) {
+    int i = start;
+    while (i < document.length()) {
+      final char c = document.charAt(i);
+      if (!isNameStart(c) && !(c >= '0' && c <= '9')) {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+}
@@ -0,0 +1,186 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
+
+/**
+ * Iterates over the records of a paged GraphQL query, fetching the next page while the current one
+ * is consumed. At most {@code maxBufferedPages} pages are fetched ahead of the consumer, and one
+ * request is in flight at a time. Closing the pager ends the iteration and drops buffered pages; a
+ * response that is already in flight is discarded.
+ * <p>
+ * Not safe for use by multiple consuming threads.
+ *
+ * @see EISquatchAuth#graphQLPages(String, String, String, JsonNode, EIGraphQLPaging, int)
+ */
+public final class EIGraphQLPager implements Iterator<JsonNode>, Closeable {
+
+  private final EISquatchAuth squatchAuth;
+  private final String tenantAlias;
+  private final String query;
+  @Nullable
+  private final String operationName;
+  private final EIGraphQLPaging paging;
+  private final int maxBufferedPages;
+  // The fields below are guarded by this
+  private final Deque<JsonNode> pages = new ArrayDeque<>();
+  @Nullable
+  private ObjectNode nextVariables;
+  private boolean fetching;
+  @Nullable
+  private Throwable failure;
+  // Also read without the lock so a close stops iteration within the current page
+  private volatile boolean closed;
+  // Only used by the consuming thread
+  private Iterator<JsonNode> currentPage = Collections.emptyIterator();
+
+  EIGraphQLPager(EISquatchAuth squatchAuth, String tenantAlias, String query,
+      @Nullable String operationName, ObjectNode firstVariables, EIGraphQLPaging paging,
+      int maxBufferedPages) {
+    this.squatchAuth = squatchAuth;
+    this.tenantAlias = tenantAlias;
+    this.query = query;
+    this.operationName = operationName;
+    this.nextVariables = firstVariables;
+    this.paging = paging;
+    this.maxBufferedPages = maxBufferedPages;
+  }
+
+  void start() {
+    fetchNextPage();
+  }
+
+  /**
+   * @throws RuntimeException if a page failed to load. Pages fetched before the failure are
+   *         consumed first.
+   */
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    while (!currentPage.hasNext()) {
+      final JsonNode page = takePage();
+      if (page == null) {
+        return false;
+      }
+      currentPage = page.elements();
+      fetchNextPage();
+    }
+    return true;
+  }
+
+  @Override
+  public JsonNode next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return currentPage.next();
+  }
+
+  /**
+   * @return the remaining records as a sequential stream that closes this pager when closed
+   */
+  public Stream<JsonNode> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+        Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    nextVariables = null;
+    pages.clear();
+    notifyAll();
+  }
+
+  @Nullable
+  private synchronized JsonNode takePage() {
+    while (pages.isEmpty() && failure == null && !closed
+        && (fetching || nextVariables != null)) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new RuntimeException(e);
+      }
+    }
+    if (!pages.isEmpty()) {
+      return pages.poll();
+    }
+    if (failure != null) {
+      throw failure instanceof RuntimeException
+          ? (RuntimeException) failure : new RuntimeException(failure);
+    }
+    return null;
+  }
+
+  private void fetchNextPage() {
+    final ObjectNode variables;
+    synchronized (this) {
+      if (fetching || closed || failure != null || nextVariables == null
+          || pages.size() >= maxBufferedPages) {
+        return;
+      }
+      fetching = true;
+      variables = nextVariables;
+      nextVariables = null;
+    }
+    final CompletionStage<EIGraphQLResponse> respPromise;
+    try {
+      respPromise = squatchAuth.graphQL(tenantAlias, query, operationName, variables);
+    } catch (RuntimeException e) {
+      onPage(variables, null, e);
+      return;
+    }
+    respPromise.whenComplete((resp, ex) -> onPage(variables, resp, ex));
+  }
+
+  private void onPage(ObjectNode variables, @Nullable EIGraphQLResponse resp,
+      @Nullable Throwable ex) {
+    synchronized (this) {
+      fetching = false;
+      if (closed) {
+        return;
+      }
+      if (ex != null) {
+        failure = ex instanceof CompletionException && ex.getCause() != null
+            ? ex.getCause() : ex;
+      } else if (EIJson.nonEmpty(resp.getErrors())) {
+        failure = new IllegalStateException(String.format(Locale.ROOT,
+            "GraphQL errors received for tenant[%s]: %s", tenantAlias, resp.getErrors()));
+      } else {
+        final JsonNode data = resp.getData() == null ? MissingNode.getInstance() : resp.getData();
+        final JsonNode records = paging.getRecords(data);
+        if (records.isArray()) {
+          if (records.size() > 0) {
+            pages.add(records);
+          }
+          nextVariables = paging.nextVariables(variables, data, records);
+        } else {
+          failure = new IllegalStateException(String.format(Locale.ROOT,
+              "No records array at [%s] for tenant[%s]", paging.getRecordsPath(), tenantAlias));
+        }
+      }
+      notifyAll();
+    }
+    fetchNextPage();
+  }
+
+}
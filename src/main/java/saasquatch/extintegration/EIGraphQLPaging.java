@@ -0,0 +1,121 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * How {@link EIGraphQLPager} finds the records of a page and the variables for the next page.
+ * Paths are JSON pointers relative to the {@code data} of the GraphQL response, e.g.
+ * {@code /users/data}.
+ */
+public final class EIGraphQLPaging {
+
+  private final JsonPointer recordsPath;
+  // The offset or cursor variable
+  private final String pageVariable;
+  @Nullable
+  private final String limitVariable;
+  private final int limit;
+  // null for offset paging
+  @Nullable
+  private final JsonPointer nextCursorPath;
+  // Optional for offset paging
+  @Nullable
+  private final JsonPointer totalCountPath;
+
+  private EIGraphQLPaging(String recordsPath, String pageVariable,
+      @Nullable String limitVariable, int limit, @Nullable String nextCursorPath,
+      @Nullable String totalCountPath) {
+    this.recordsPath = JsonPointer.compile(recordsPath);
+    this.pageVariable = Validate.notBlank(pageVariable);
+    this.limitVariable = limitVariable;
+    this.limit = limit;
+    this.nextCursorPath = nextCursorPath == null ? null : JsonPointer.compile(nextCursorPath);
+    this.totalCountPath = totalCountPath == null ? null : JsonPointer.compile(totalCountPath);
+  }
+
+  /**
+   * Page by offset and limit. Paging stops at the first page with no records, since the server
+   * may cap pages below {@code limit}, so a short page does not mean it was the last one.
+   */
+  public static EIGraphQLPaging offset(String recordsPath, String offsetVariable,
+      String limitVariable, int limit) {
+    Validate.isTrue(limit > 0, "limit must be positive");
+    return new EIGraphQLPaging(recordsPath, offsetVariable, Validate.notBlank(limitVariable),
+        limit, null, null);
+  }
+
+  /**
+   * Page by offset and limit, stopping once the offset reaches the total count read from
+   * {@code totalCountPath}, e.g. {@code /users/totalCount}. This saves the request for the
+   * trailing empty page. Pages without a numeric total count fall back to stopping at the first
+   * page with no records.
+   */
+  public static EIGraphQLPaging offset(String recordsPath, String offsetVariable,
+      String limitVariable, int limit, String totalCountPath) {
+    Validate.isTrue(limit > 0, "limit must be positive");
+    return new EIGraphQLPaging(recordsPath, offsetVariable, Validate.notBlank(limitVariable),
+        limit, null, Validate.notBlank(totalCountPath));
+  }
+
+  /**
+   * Page by cursor. The cursor for the next page is read from {@code nextCursorPath}, and paging
+   * stops when it is missing, null or unchanged, or when a page has no records. The page size, if
+   * any, is left to the caller's variables.
+   */
+  public static EIGraphQLPaging cursor(String recordsPath, String cursorVariable,
+      String nextCursorPath) {
+    return new EIGraphQLPaging(recordsPath, cursorVariable, null, 0,
+        Validate.notBlank(nextCursorPath), null);
+  }
+
+  public JsonPointer getRecordsPath() {
+    return recordsPath;
+  }
+
+  JsonNode getRecords(JsonNode data) {
+    return data.at(recordsPath);
+  }
+
+  ObjectNode firstVariables(ObjectNode variables) {
+    if (limitVariable != null) {
+      variables.put(limitVariable, limit);
+    }
+    if (nextCursorPath == null && !variables.hasNonNull(pageVariable)) {
+      variables.put(pageVariable, 0);
+    }
+    return variables;
+  }
+
+  /**
+   * @return the variables for the page after the given one, or null if it was the last page
+   */
+  @Nullable
+  ObjectNode nextVariables(ObjectNode variables, JsonNode data, JsonNode records) {
+    if (records.size() == 0) {
+      return null;
+    }
+    if (nextCursorPath == null) {
+      final long nextOffset = variables.path(pageVariable).asLong() + records.size();
+      if (totalCountPath != null) {
+        final JsonNode totalCount = data.at(totalCountPath);
+        if (totalCount.isNumber() && nextOffset >= totalCount.asLong()) {
+          return null;
+        }
+      }
+      return variables.deepCopy().put(pageVariable, nextOffset);
+    }
+    final JsonNode nextCursor = data.at(nextCursorPath);
+    if (!nextCursor.isValueNode() || nextCursor.isNull()
+        || nextCursor.equals(variables.get(pageVariable))) {
+      return null;
+    }
+    final ObjectNode nextVariables = variables.deepCopy();
+    nextVariables.set(pageVariable, nextCursor);
+    return nextVariables;
+  }
+
+}
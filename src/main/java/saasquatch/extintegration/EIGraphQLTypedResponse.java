@@ -0,0 +1,66 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A GraphQL response with {@code data} deserialized into a caller provided type
+ *
+ * @see EISquatchAuth#graphQL(String, String, String, JsonNode, JavaType)
+ */
+public final class EIGraphQLTypedResponse<T> {
+
+  @Nullable
+  private final T data;
+  @Nullable
+  private final ArrayNode errors;
+
+  public EIGraphQLTypedResponse(@Nullable T data, @Nullable ArrayNode errors) {
+    this.data = data;
+    this.errors = errors;
+  }
+
+  @Nullable
+  public T getData() {
+    return data;
+  }
+
+  @Nullable
+  public ArrayNode getErrors() {
+    return errors;
+  }
+
+  /**
+   * Read a GraphQL response in a single pass, binding {@code data} directly to the given type
+   */
+  public static <T> EIGraphQLTypedResponse<T> parse(byte[] bytes, JavaType dataType)
+      throws IOException {
+    T data = null;
+    ArrayNode errors = null;
+    try (JsonParser parser = EIJson.mapper().createParser(bytes)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "GraphQL response is not an object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if ("data".equals(fieldName)) {
+          data = EIJson.mapper().readValue(parser, dataType);
+        } else if ("errors".equals(fieldName)) {
+          final JsonNode errorsJson = EIJson.mapper().readTree(parser);
+          errors = errorsJson instanceof ArrayNode ? (ArrayNode) errorsJson : null;
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return new EIGraphQLTypedResponse<>(data, errors);
+  }
+
+}
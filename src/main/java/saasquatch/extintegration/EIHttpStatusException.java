@@ -0,0 +1,21 @@
+package saasquatch.extintegration;
+
+/**
+ * Thrown when a SaaSquatch API call receives an unexpected HTTP status
+ */
+public class EIHttpStatusException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int status;
+
+  public EIHttpStatusException(int status, String message) {
+    super(message);
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+}
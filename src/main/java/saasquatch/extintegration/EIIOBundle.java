@@ -1,9 +1,14 @@
 package saasquatch.extintegration;
 
 import java.io.Closeable;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executor;
 import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,20 +17,40 @@ public class EIIOBundle implements Closeable {
 
   private final CloseableHttpClient httpClient;
   private final CloseableHttpAsyncClient httpAsyncClient;
+  private final PoolingAsyncClientConnectionManager asyncConnectionManager;
   private final Executor executor;
+  private final Deque<Closeable> closeables = new ConcurrentLinkedDeque<>();
+  private volatile EITracer tracer = EITracer.NOOP;
 
   public EIIOBundle(Executor executor) {
     this.executor = executor;
     this.httpClient = EIApacheHcUtil.newBlockingClient();
-    this.httpAsyncClient = EIApacheHcUtil.newAsyncClient();
+    this.asyncConnectionManager = EIApacheHcUtil.newAsyncConnectionManager();
+    this.httpAsyncClient = EIApacheHcUtil.newAsyncClient(asyncConnectionManager);
   }
 
   public void start() {
     httpAsyncClient.start();
   }
 
+  /**
+   * Register a resource to be closed when this bundle is closed. Registered resources are closed
+   * in reverse registration order, before the HTTP clients.
+   */
+  public void registerCloseable(Closeable closeable) {
+    closeables.addFirst(closeable);
+  }
+
   @Override
   public void close() {
+    Closeable closeable;
+    while ((closeable = closeables.pollFirst()) != null) {
+      try {
+        closeable.close();
+      } catch (Exception e) {
+        logger.warn("Exception encountered in close()", e);
+      }
+    }
     try (
       AutoCloseable c1 = httpClient;
       AutoCloseable c2 = httpAsyncClient;
@@ -48,4 +73,19 @@ public class EIIOBundle implements Closeable {
     return httpAsyncClient;
   }
 
+  /**
+   * @return connection pool usage of the async client, across all routes
+   */
+  public PoolStats getAsyncPoolStats() {
+    return asyncConnectionManager.getTotalStats();
+  }
+
+  public EITracer getTracer() {
+    return tracer;
+  }
+
+  public void setTracer(EITracer tracer) {
+    this.tracer = Objects.requireNonNull(tracer);
+  }
+
 }
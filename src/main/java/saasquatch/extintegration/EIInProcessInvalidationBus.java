@@ -0,0 +1,40 @@
+package saasquatch.extintegration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link EIInvalidationBus} that delivers invalidations synchronously to subscribers in the same
+ * JVM.
+ */
+public class EIInProcessInvalidationBus implements EIInvalidationBus {
+
+  private static final Logger logger = LoggerFactory.getLogger(EIInProcessInvalidationBus.class);
+
+  private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void publish(Invalidation invalidation) {
+    for (Consumer<Invalidation> listener : listeners) {
+      try {
+        listener.accept(invalidation);
+      } catch (RuntimeException e) {
+        logger.warn("Exception encountered delivering {}", invalidation, e);
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<Invalidation> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void close() {
+    listeners.clear();
+  }
+
+}
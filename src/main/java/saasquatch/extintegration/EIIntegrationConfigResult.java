@@ -0,0 +1,54 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import javax.annotation.Nullable;
+
+/**
+ * The outcome of loading the integration config of a single tenant
+ *
+ * @see EISquatchAuth#prefetchIntegrationConfigs(java.util.stream.Stream, int,
+ *      java.util.function.Consumer)
+ */
+public final class EIIntegrationConfigResult {
+
+  private final String tenantAlias;
+  @Nullable
+  private final JsonNode integrationConfig;
+  @Nullable
+  private final Throwable error;
+
+  public EIIntegrationConfigResult(String tenantAlias, @Nullable JsonNode integrationConfig,
+      @Nullable Throwable error) {
+    this.tenantAlias = tenantAlias;
+    this.integrationConfig = integrationConfig;
+    this.error = error;
+  }
+
+  public String getTenantAlias() {
+    return tenantAlias;
+  }
+
+  /**
+   * @return the config, or null if the load failed or the tenant has no enabled integration
+   */
+  @Nullable
+  public JsonNode getIntegrationConfig() {
+    return integrationConfig;
+  }
+
+  @Nullable
+  public Throwable getError() {
+    return error;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  @Override
+  public String toString() {
+    return "EIIntegrationConfigResult{tenantAlias=" + tenantAlias + ", success=" + isSuccess()
+        + '}';
+  }
+
+}
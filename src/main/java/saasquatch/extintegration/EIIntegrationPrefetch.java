@@ -0,0 +1,128 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pulls tenant aliases from a source and loads their integration configs with a bounded number
+ * of loads in flight, handing each result to a consumer as soon as it completes.
+ */
+final class EIIntegrationPrefetch {
+
+  private static final Logger logger = LoggerFactory.getLogger(EIIntegrationPrefetch.class);
+
+  private final Iterator<String> tenantAliases;
+  private final Function<String, ? extends CompletableFuture<JsonNode>> loader;
+  private final int maxInFlight;
+  private final Consumer<? super EIIntegrationConfigResult> resultConsumer;
+  private final CompletableFuture<Void> done = new CompletableFuture<>();
+  // The fields below are guarded by this
+  private int inFlight;
+  private boolean exhausted;
+  // Whether a thread is in fill(), and whether it should loop again
+  private boolean filling;
+  private boolean refill;
+
+  EIIntegrationPrefetch(Iterator<String> tenantAliases,
+      Function<String, ? extends CompletableFuture<JsonNode>> loader, int maxInFlight,
+      Consumer<? super EIIntegrationConfigResult> resultConsumer) {
+    this.tenantAliases = tenantAliases;
+    this.loader = loader;
+    this.maxInFlight = maxInFlight;
+    this.resultConsumer = resultConsumer;
+  }
+
+  /**
+   * @return a future that completes once every tenant has been processed, or exceptionally if the
+   *         tenant alias source fails. Cancelling it stops new loads from being started.
+   */
+  CompletableFuture<Void> start() {
+    fill();
+    return done;
+  }
+
+  /**
+   * Start loads until the in-flight limit is reached. Loads that complete synchronously, such as
+   * cache hits, make the running fill loop again instead of recursing.
+   */
+  private void fill() {
+    synchronized (this) {
+      if (filling) {
+        refill = true;
+        return;
+      }
+      filling = true;
+    }
+    while (true) {
+      final String tenantAlias;
+      synchronized (this) {
+        tenantAlias = nextTenantAlias();
+        if (tenantAlias == null) {
+          if (refill) {
+            refill = false;
+            continue;
+          }
+          filling = false;
+          return;
+        }
+        inFlight++;
+      }
+      CompletableFuture<JsonNode> loadPromise;
+      try {
+        loadPromise = loader.apply(tenantAlias);
+      } catch (RuntimeException e) {
+        loadPromise = new CompletableFuture<>();
+        loadPromise.completeExceptionally(e);
+      }
+      loadPromise.whenComplete((integrationConfig, ex) -> onLoaded(tenantAlias,
+          integrationConfig, ex));
+    }
+  }
+
+  /**
+   * @return the next tenant alias to load, or null if none should be started now
+   */
+  private String nextTenantAlias() {
+    if (done.isDone() || exhausted || inFlight >= maxInFlight) {
+      return null;
+    }
+    try {
+      if (tenantAliases.hasNext()) {
+        return tenantAliases.next();
+      }
+      exhausted = true;
+      if (inFlight == 0) {
+        done.complete(null);
+      }
+    } catch (RuntimeException e) {
+      exhausted = true;
+      done.completeExceptionally(e);
+    }
+    return null;
+  }
+
+  private void onLoaded(String tenantAlias, JsonNode integrationConfig, Throwable ex) {
+    final Throwable error = ex instanceof CompletionException && ex.getCause() != null
+        ? ex.getCause() : ex;
+    try {
+      resultConsumer.accept(new EIIntegrationConfigResult(tenantAlias,
+          error == null ? integrationConfig : null, error));
+    } catch (RuntimeException e) {
+      logger.warn("Integration config result consumer failed for tenant[{}]", tenantAlias, e);
+    }
+    synchronized (this) {
+      inFlight--;
+      if (exhausted && inFlight == 0) {
+        done.complete(null);
+      }
+    }
+    fill();
+  }
+
+}
@@ -0,0 +1,61 @@
+package saasquatch.extintegration;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts integration cache invalidations between nodes, so the integration cache TTL can be
+ * long while reads stay consistent.
+ *
+ * @see EISquatchAuth#setInvalidationBus(EIInvalidationBus)
+ */
+public interface EIInvalidationBus extends Closeable {
+
+  void publish(Invalidation invalidation);
+
+  void subscribe(Consumer<Invalidation> listener);
+
+  @Override
+  void close();
+
+  final class Invalidation {
+
+    private final String sourceId;
+    private final String tenantAlias;
+    private final long sequence;
+
+    public Invalidation(String sourceId, String tenantAlias, long sequence) {
+      this.sourceId = sourceId;
+      this.tenantAlias = tenantAlias;
+      this.sequence = sequence;
+    }
+
+    /**
+     * @return the id of the publisher, so publishers can ignore their own invalidations
+     */
+    public String getSourceId() {
+      return sourceId;
+    }
+
+    public String getTenantAlias() {
+      return tenantAlias;
+    }
+
+    /**
+     * @return the sequence number of this invalidation among those of its publisher. Together with
+     *         the source id it identifies the invalidation, so duplicates can be dropped without
+     *         comparing clocks across nodes.
+     */
+    public long getSequence() {
+      return sequence;
+    }
+
+    @Override
+    public String toString() {
+      return "Invalidation{sourceId=" + sourceId + ", tenantAlias=" + tenantAlias
+          + ", sequence=" + sequence + '}';
+    }
+
+  }
+
+}
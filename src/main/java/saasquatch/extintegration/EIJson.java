@@ -1,26 +1,51 @@
 package saasquatch.extintegration;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.core.util.RecyclerPool;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
 import com.fasterxml.jackson.databind.node.ValueNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class EIJson {
 
+  private static final Logger logger = LoggerFactory.getLogger(EIJson.class);
+
   private EIJson() {}
 
   public static ObjectMapper mapper() {
@@ -28,8 +53,22 @@ public final class EIJson {
   }
 
   public static ObjectMapper newDefaultMapper() {
-    final ObjectMapper mapper = new ObjectMapper(JsonFactory.builder()
-        .disable(JsonFactory.Feature.USE_THREAD_LOCAL_FOR_BUFFER_RECYCLING).build());
+    return newDefaultMapper(BufferRecycling.NONE);
+  }
+
+  public static ObjectMapper newDefaultMapper(@Nonnull BufferRecycling bufferRecycling) {
+    final JsonFactory jsonFactory;
+    if (bufferRecycling == BufferRecycling.NONE) {
+      jsonFactory = JsonFactory.builder()
+          .disable(JsonFactory.Feature.USE_THREAD_LOCAL_FOR_BUFFER_RECYCLING).build();
+    } else {
+      // The recycler pool is only used when this feature is enabled
+      jsonFactory = JsonFactory.builder()
+          .enable(JsonFactory.Feature.USE_THREAD_LOCAL_FOR_BUFFER_RECYCLING)
+          .recyclerPool(bufferRecycling.poolSupplier.get())
+          .build();
+    }
+    final ObjectMapper mapper = new ObjectMapper(jsonFactory);
     return mapper;
   }
 
@@ -93,12 +132,279 @@ public final class EIJson {
     }
   }
 
+  /**
+   * Same as {@link #mutateValueNodes(JsonNode, Function)}, except that containers are only
+   * copied when something under them changed. Unchanged subtrees are shared with the input, which
+   * is never modified. A mutation result equal to its input counts as unchanged.
+   */
+  public static JsonNode mutateValueNodesCopyOnWrite(@Nonnull final JsonNode json,
+      @Nonnull final Function<ValueNode, JsonNode> mutation) {
+    if (json.isMissingNode()) {
+      return json;
+    } else if (json.isArray()) {
+      ArrayNode newNode = null;
+      for (int i = 0; i < json.size(); i++) {
+        final JsonNode v = json.get(i);
+        final JsonNode newV = mutateValueNodesCopyOnWrite(v, mutation);
+        if (newV != v) {
+          if (newNode == null) {
+            newNode = JsonNodeFactory.instance.arrayNode(json.size()).addAll((ArrayNode) json);
+          }
+          newNode.set(i, newV);
+        }
+      }
+      return newNode == null ? json : newNode;
+    } else if (json.isObject()) {
+      ObjectNode newNode = null;
+      final Iterator<Map.Entry<String, JsonNode>> fieldsIter = json.fields();
+      while (fieldsIter.hasNext()) {
+        final Map.Entry<String, JsonNode> e = fieldsIter.next();
+        final JsonNode v = e.getValue();
+        final JsonNode newV = mutateValueNodesCopyOnWrite(v, mutation);
+        if (newV != v) {
+          if (newNode == null) {
+            newNode = JsonNodeFactory.instance.objectNode();
+            newNode.setAll((ObjectNode) json);
+          }
+          newNode.set(e.getKey(), newV);
+        }
+      }
+      return newNode == null ? json : newNode;
+    } else {
+      final JsonNode newNode = mutation.apply((ValueNode) json);
+      return json.equals(newNode) ? json : newNode;
+    }
+  }
+
+  /**
+   * Streaming version of {@link #mutateValueNodes(JsonNode, Function)} that copies tokens from
+   * the parser to the generator, applying the mutation to each scalar value without building a
+   * tree.
+   */
+  public static void mutateValueNodes(@Nonnull final JsonParser parser,
+      @Nonnull final JsonGenerator generator,
+      @Nonnull final Function<ValueNode, JsonNode> mutation) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      if (token.isScalarValue()) {
+        final JsonNode newNode = mutation.apply(currentValueNode(parser));
+        if (newNode == null) {
+          generator.writeNull();
+        } else {
+          writeNode(generator, newNode);
+        }
+      } else {
+        generator.copyCurrentEvent(parser);
+      }
+    }
+  }
+
+  /**
+   * @see #mutateValueNodes(JsonParser, JsonGenerator, Function)
+   */
+  public static byte[] mutateValueNodes(@Nonnull final byte[] json,
+      @Nonnull final Function<ValueNode, JsonNode> mutation) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+    try (
+        JsonParser parser = mapper().getFactory().createParser(json);
+        JsonGenerator generator = mapper().getFactory().createGenerator(out);
+    ) {
+      mutateValueNodes(parser, generator, mutation);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Write the given node directly, since going through the mapper creates a serializer provider
+   * and flushes the generator on every call. Only POJO nodes need the mapper, and nodes whose
+   * serialize method reads the provider are written here.
+   */
+  private static void writeNode(JsonGenerator generator, JsonNode node) throws IOException {
+    switch (node.getNodeType()) {
+      case ARRAY:
+        generator.writeStartArray();
+        for (JsonNode element : node) {
+          writeNode(generator, element);
+        }
+        generator.writeEndArray();
+        break;
+      case OBJECT:
+        generator.writeStartObject();
+        final Iterator<Map.Entry<String, JsonNode>> fieldsIter = node.fields();
+        while (fieldsIter.hasNext()) {
+          final Map.Entry<String, JsonNode> field = fieldsIter.next();
+          generator.writeFieldName(field.getKey());
+          writeNode(generator, field.getValue());
+        }
+        generator.writeEndObject();
+        break;
+      case NULL:
+      case MISSING:
+        generator.writeNull();
+        break;
+      case BINARY:
+        // BinaryNode reads the Base64 variant from the serializer provider
+        generator.writeBinary(node.binaryValue());
+        break;
+      case POJO:
+        mapper().writeTree(generator, node);
+        break;
+      default:
+        ((JsonSerializable) node).serialize(generator, null);
+        break;
+    }
+  }
+
+  private static ValueNode currentValueNode(JsonParser parser) throws IOException {
+    final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+    switch (parser.currentToken()) {
+      case VALUE_STRING:
+        return nodeFactory.textNode(parser.getText());
+      case VALUE_NUMBER_INT:
+        switch (parser.getNumberType()) {
+          case INT:
+            return nodeFactory.numberNode(parser.getIntValue());
+          case LONG:
+            return nodeFactory.numberNode(parser.getLongValue());
+          default:
+            return nodeFactory.numberNode(parser.getBigIntegerValue());
+        }
+      case VALUE_NUMBER_FLOAT:
+        if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+          return nodeFactory.numberNode(parser.getDecimalValue());
+        }
+        return nodeFactory.numberNode(parser.getDoubleValue());
+      case VALUE_TRUE:
+        return nodeFactory.booleanNode(true);
+      case VALUE_FALSE:
+        return nodeFactory.booleanNode(false);
+      case VALUE_NULL:
+        return nodeFactory.nullNode();
+      default:
+        final Object embedded = parser.getEmbeddedObject();
+        return embedded instanceof byte[] ? nodeFactory.binaryNode((byte[]) embedded)
+            : nodeFactory.pojoNode(embedded);
+    }
+  }
+
+  /**
+   * Convert an object node to a {@link LinkedHashMap} of plain Java values by walking the tree
+   * directly. The result is the same as converting it with {@link ObjectMapper#convertValue}.
+   * Only the values of {@link POJONode}s still go through the mapper.
+   */
   public static Map<String, Object> toMap(@Nullable JsonNode json) {
-    return mapper().convertValue(json, new TypeReference<LinkedHashMap<String, Object>>() {});
+    if (isNull(json)) {
+      return null;
+    }
+    if (!json.isObject()) {
+      throw new IllegalArgumentException("Cannot convert " + json.getNodeType() + " to Map");
+    }
+    return objectNodeToMap(json);
   }
 
   public static Map<String, Object> toMap(@Nullable Object obj) {
-    return mapper().convertValue(obj, new TypeReference<LinkedHashMap<String, Object>>() {});
+    if (obj instanceof JsonNode) {
+      return toMap((JsonNode) obj);
+    }
+    return mapper().convertValue(obj, MapTypeHolder.MAP_TYPE);
+  }
+
+  /**
+   * Inverse of {@link #toMap(JsonNode)}. Values that are not maps, collections, arrays, JSON
+   * scalars or {@link JsonNode}s are converted with {@link ObjectMapper#valueToTree(Object)}.
+   */
+  public static ObjectNode toObjectNode(@Nonnull Map<?, ?> map) {
+    final ObjectNode result = JsonNodeFactory.instance.objectNode();
+    map.forEach((k, v) -> result.set(String.valueOf(k), valueToNode(v)));
+    return result;
+  }
+
+  private static LinkedHashMap<String, Object> objectNodeToMap(JsonNode json) {
+    final LinkedHashMap<String, Object> result = Maps.newLinkedHashMapWithExpectedSize(json.size());
+    final Iterator<Map.Entry<String, JsonNode>> fieldsIter = json.fields();
+    while (fieldsIter.hasNext()) {
+      final Map.Entry<String, JsonNode> e = fieldsIter.next();
+      result.put(e.getKey(), nodeToValue(e.getValue()));
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Object nodeToValue(JsonNode json) {
+    switch (json.getNodeType()) {
+      case OBJECT:
+        return objectNodeToMap(json);
+      case ARRAY:
+        final List<Object> list = new ArrayList<>(json.size());
+        for (JsonNode elem : json) {
+          list.add(nodeToValue(elem));
+        }
+        return list;
+      case STRING:
+        return json.textValue();
+      case BOOLEAN:
+        return json.booleanValue();
+      case NUMBER:
+        // Keeps the boxed type of the node, e.g. Float for a FloatNode and Short for a ShortNode
+        return json.numberValue();
+      case BINARY:
+        return ((BinaryNode) json).binaryValue();
+      case POJO:
+        // Like convertValue, turn the pojo into maps, lists and scalars
+        return mapper().convertValue(((POJONode) json).getPojo(), Object.class);
+      default:
+        return null;
+    }
+  }
+
+  private static JsonNode valueToNode(@Nullable Object value) {
+    final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+    if (value == null) {
+      return nodeFactory.nullNode();
+    } else if (value instanceof JsonNode) {
+      return (JsonNode) value;
+    } else if (value instanceof String) {
+      return nodeFactory.textNode((String) value);
+    } else if (value instanceof Boolean) {
+      return nodeFactory.booleanNode((Boolean) value);
+    } else if (value instanceof Integer) {
+      return nodeFactory.numberNode((Integer) value);
+    } else if (value instanceof Short) {
+      return nodeFactory.numberNode((Short) value);
+    } else if (value instanceof Byte) {
+      // There is no ByteNode; this is an IntNode
+      return nodeFactory.numberNode((Byte) value);
+    } else if (value instanceof Long) {
+      return nodeFactory.numberNode((Long) value);
+    } else if (value instanceof Float) {
+      return nodeFactory.numberNode((Float) value);
+    } else if (value instanceof Double) {
+      return nodeFactory.numberNode((Double) value);
+    } else if (value instanceof BigInteger) {
+      return nodeFactory.numberNode((BigInteger) value);
+    } else if (value instanceof BigDecimal) {
+      return nodeFactory.numberNode((BigDecimal) value);
+    } else if (value instanceof Map) {
+      return toObjectNode((Map<?, ?>) value);
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) value;
+      final ArrayNode arrayNode = nodeFactory.arrayNode(collection.size());
+      for (Object elem : collection) {
+        arrayNode.add(valueToNode(elem));
+      }
+      return arrayNode;
+    } else if (value instanceof Object[]) {
+      final Object[] array = (Object[]) value;
+      final ArrayNode arrayNode = nodeFactory.arrayNode(array.length);
+      for (Object elem : array) {
+        arrayNode.add(valueToNode(elem));
+      }
+      return arrayNode;
+    } else {
+      return mapper().valueToTree(value);
+    }
   }
 
   public static String stringify(JsonNode json) {
@@ -121,6 +427,31 @@ public final class EIJson {
     return hasArraysOfArrays(j, false);
   }
 
+  /**
+   * Streaming version of {@link #hasArraysOfArrays(JsonNode)}. Stops reading at the first nested
+   * array.
+   */
+  public static boolean hasArraysOfArrays(@Nonnull final JsonParser parser) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      if (token == JsonToken.START_ARRAY && parser.getParsingContext().getParent().inArray()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @see #hasArraysOfArrays(JsonParser)
+   */
+  public static boolean hasArraysOfArrays(@Nonnull final byte[] json) {
+    try (JsonParser parser = mapper().getFactory().createParser(json)) {
+      return hasArraysOfArrays(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   private static boolean hasArraysOfArrays(JsonNode j, boolean parentIsArray) {
     if (j == null) {
       return false;
@@ -169,8 +500,13 @@ public final class EIJson {
         return;
       }
       int index = 0;
+      boolean hasMissingNodes = false;
       for (JsonNode arrayElem : j) {
-        replaceArraysOfArrays(arrayElem, transform, j, index++);
+        replaceArraysOfArrays(arrayElem, transform, j, index);
+        hasMissingNodes |= j.get(index++).isMissingNode();
+      }
+      if (!hasMissingNodes) {
+        return;
       }
       // Get rid of non null missing nodes
       final Iterator<JsonNode> arrayIter = j.iterator();
@@ -183,8 +519,97 @@ public final class EIJson {
     }
   }
 
+  /**
+   * Streaming version of {@link #replaceArraysOfArrays(JsonNode, Function)} that copies tokens
+   * from the parser to the generator in one pass. Only the nested array being transformed is
+   * read into a tree. Nested arrays transformed to null or a missing node are dropped.
+   */
+  public static void replaceArraysOfArrays(@Nonnull final JsonParser parser,
+      @Nonnull final JsonGenerator generator,
+      @Nonnull final Function<ArrayNode, JsonNode> transform) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      if (token == JsonToken.START_ARRAY && parser.getParsingContext().getParent().inArray()) {
+        final ArrayNode nestedArray = mapper().readTree(parser);
+        final JsonNode transformResult = transform.apply(nestedArray);
+        if (transformResult != null && !transformResult.isMissingNode()) {
+          writeNode(generator, transformResult);
+        }
+      } else {
+        generator.copyCurrentEvent(parser);
+      }
+    }
+  }
+
+  /**
+   * @see #replaceArraysOfArrays(JsonParser, JsonGenerator, Function)
+   */
+  public static byte[] replaceArraysOfArrays(@Nonnull final byte[] json,
+      @Nonnull final Function<ArrayNode, JsonNode> transform) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+    try (
+        JsonParser parser = mapper().getFactory().createParser(json);
+        JsonGenerator generator = mapper().getFactory().createGenerator(out);
+    ) {
+      replaceArraysOfArrays(parser, generator, transform);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * How the parsers and generators of a mapper get their char and byte buffers. The strategy of
+   * {@link #mapper()} is read from the {@value #BUFFER_RECYCLING_PROPERTY} system property, and
+   * defaults to {@link #NONE}, which is also used when the value is not recognized.
+   */
+  public enum BufferRecycling {
+    /** Every parser and generator allocates new buffers */
+    NONE(JsonRecyclerPools::nonRecyclingPool),
+    /** One set of buffers per thread. Suited to a bounded number of platform threads. */
+    THREAD_LOCAL(JsonRecyclerPools::threadLocalPool),
+    /** A shared unbounded lock-free pool. Suited to virtual threads. */
+    LOCK_FREE(JsonRecyclerPools::sharedLockFreePool),
+    /** A shared pool with a fixed capacity, for virtual threads with a bounded memory budget */
+    BOUNDED(JsonRecyclerPools::sharedBoundedPool);
+
+    public static final String BUFFER_RECYCLING_PROPERTY =
+        "saasquatch.extintegration.jsonBufferRecycling";
+
+    private final Supplier<RecyclerPool<BufferRecycler>> poolSupplier;
+
+    BufferRecycling(Supplier<RecyclerPool<BufferRecycler>> poolSupplier) {
+      this.poolSupplier = poolSupplier;
+    }
+
+  }
+
   private static final class MapperHolder {
-    private static final ObjectMapper MAPPER = newDefaultMapper();
+    private static final ObjectMapper MAPPER = newDefaultMapper(bufferRecyclingFromProperty());
+  }
+
+  /**
+   * Unknown values fall back to {@link BufferRecycling#NONE} with a warning rather than failing
+   * the initialization of this class.
+   */
+  private static BufferRecycling bufferRecyclingFromProperty() {
+    final String value = System.getProperty(BufferRecycling.BUFFER_RECYCLING_PROPERTY);
+    if (value == null || value.trim().isEmpty()) {
+      return BufferRecycling.NONE;
+    }
+    try {
+      return BufferRecycling.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      logger.warn("Unknown value[{}] for system property[{}]. Expected one of {}. Using {}.",
+          value, BufferRecycling.BUFFER_RECYCLING_PROPERTY,
+          Arrays.toString(BufferRecycling.values()), BufferRecycling.NONE);
+      return BufferRecycling.NONE;
+    }
+  }
+
+  private static final class MapTypeHolder {
+    private static final JavaType MAP_TYPE = TypeFactory.defaultInstance()
+        .constructMapType(LinkedHashMap.class, String.class, Object.class);
   }
 
 }
@@ -0,0 +1,121 @@
+package saasquatch.extintegration;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.annotation.Nullable;
+
+/**
+ * A GraphQL response kept as its raw bytes. {@code data} and {@code errors} are each parsed on
+ * first access, skipping over the rest of the response without building a tree for it.
+ *
+ * @see EISquatchAuth#graphQLLazy(String, String, String, JsonNode)
+ */
+public final class EILazyGraphQLResponse {
+
+  private final byte[] bytes;
+  // Parsed on demand. Racing threads parse the same bytes, so either result can win.
+  @Nullable
+  private volatile ObjectNode data;
+  private volatile boolean dataParsed;
+  @Nullable
+  private volatile ArrayNode errors;
+  private volatile boolean errorsParsed;
+
+  public EILazyGraphQLResponse(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * @return the raw response. Must not be modified.
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  @Nullable
+  public ObjectNode getData() {
+    if (!dataParsed) {
+      final JsonNode dataJson = readField("data", null);
+      data = dataJson instanceof ObjectNode ? (ObjectNode) dataJson : null;
+      dataParsed = true;
+    }
+    return data;
+  }
+
+  /**
+   * Deserialize {@code data} directly into the given type. The result is not cached.
+   */
+  @Nullable
+  public <T> T getData(JavaType dataType) {
+    return readField("data", dataType);
+  }
+
+  @Nullable
+  public <T> T getData(TypeReference<T> dataType) {
+    return getData(EIJson.mapper().getTypeFactory().constructType(dataType));
+  }
+
+  @Nullable
+  public <T> T getData(Class<T> dataType) {
+    return getData(EIJson.mapper().getTypeFactory().constructType(dataType));
+  }
+
+  @Nullable
+  public ArrayNode getErrors() {
+    if (!errorsParsed) {
+      final JsonNode errorsJson = readField("errors", null);
+      errors = errorsJson instanceof ArrayNode ? (ArrayNode) errorsJson : null;
+      errorsParsed = true;
+    }
+    return errors;
+  }
+
+  public boolean hasErrors() {
+    return EIJson.nonEmpty(getErrors());
+  }
+
+  /**
+   * @return the fully parsed equivalent of this response
+   */
+  public EIGraphQLResponse toResponse() {
+    return new EIGraphQLResponse(getData(), getErrors());
+  }
+
+  /**
+   * Read the value of a top level field, as a tree if the type is null.
+   *
+   * @return null if the field is absent
+   */
+  @Nullable
+  private <T> T readField(String fieldName, @Nullable JavaType type) {
+    try (JsonParser parser = EIJson.mapper().createParser(bytes)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "GraphQL response is not an object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String currentName = parser.getCurrentName();
+        parser.nextToken();
+        if (fieldName.equals(currentName)) {
+          @SuppressWarnings("unchecked")
+          final T value = type == null
+              ? (T) EIJson.mapper().readTree(parser)
+              : EIJson.mapper().readValue(parser, type);
+          return value;
+        }
+        parser.skipChildren();
+      }
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
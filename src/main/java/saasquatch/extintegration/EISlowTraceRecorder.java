@@ -0,0 +1,194 @@
+package saasquatch.extintegration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * {@link EITracer} that samples a fraction of calls and keeps the most recent calls slower than a
+ * threshold in a fixed size ring buffer. Calls that are not sampled get {@link EISpan#NOOP}.
+ */
+public class EISlowTraceRecorder implements EITracer {
+
+  private static final EISpan.Phase[] PHASES = EISpan.Phase.values();
+
+  private final double sampleRate;
+  private final long slowThresholdNanos;
+  private final AtomicReferenceArray<Trace> ring;
+  private final AtomicLong ringIndex = new AtomicLong();
+
+  /**
+   * @param sampleRate fraction of calls to trace, between 0 and 1
+   * @param slowThreshold calls taking at least this long are recorded
+   * @param capacity how many slow traces to keep
+   */
+  public EISlowTraceRecorder(double sampleRate, Duration slowThreshold, int capacity) {
+    Validate.inclusiveBetween(0.0, 1.0, sampleRate, "sampleRate must be between 0 and 1");
+    Validate.isTrue(capacity > 0, "capacity must be positive");
+    this.sampleRate = sampleRate;
+    this.slowThresholdNanos = slowThreshold.toNanos();
+    this.ring = new AtomicReferenceArray<>(capacity);
+  }
+
+  @Override
+  public EISpan startSpan(@Nullable String tenantAlias, String operation) {
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return EISpan.NOOP;
+    }
+    return new RecordingSpan(tenantAlias, operation);
+  }
+
+  /**
+   * @return the recorded slow traces, most recent first
+   */
+  public List<Trace> getSlowTraces() {
+    final List<Trace> traces = new ArrayList<>(ring.length());
+    final long end = ringIndex.get();
+    for (long i = end - 1; i >= Math.max(0, end - ring.length()); i--) {
+      final Trace trace = ring.get((int) (i % ring.length()));
+      if (trace != null) {
+        traces.add(trace);
+      }
+    }
+    return traces;
+  }
+
+  /**
+   * @return the recorded slow traces, most recent first, one per line
+   */
+  public String dumpSlowTraces() {
+    final StringBuilder sb = new StringBuilder();
+    for (Trace trace : getSlowTraces()) {
+      sb.append(trace).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private void record(Trace trace) {
+    ring.set((int) (ringIndex.getAndIncrement() % ring.length()), trace);
+  }
+
+  private final class RecordingSpan implements EISpan {
+
+    private final String tenantAlias;
+    private final String operation;
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    // Phase ordinal -> nanoTime the phase ended, 0 if it did not happen
+    private final AtomicLongArray phaseEnds = new AtomicLongArray(PHASES.length);
+
+    RecordingSpan(@Nullable String tenantAlias, String operation) {
+      this.tenantAlias = tenantAlias;
+      this.operation = operation;
+    }
+
+    @Override
+    public void mark(Phase phase) {
+      phaseEnds.set(phase.ordinal(), System.nanoTime());
+    }
+
+    @Override
+    public void end(@Nullable Throwable error) {
+      final long totalNanos = System.nanoTime() - startNanos;
+      if (totalNanos < slowThresholdNanos) {
+        return;
+      }
+      final List<Phase> phases = new ArrayList<>(PHASES.length);
+      for (Phase phase : PHASES) {
+        if (phaseEnds.get(phase.ordinal()) != 0) {
+          phases.add(phase);
+        }
+      }
+      // Order by time, since some calls do not go through the phases in the usual order
+      phases.sort(Comparator.comparingLong(phase -> phaseEnds.get(phase.ordinal())));
+      final Map<Phase, Duration> phaseDurations = new LinkedHashMap<>();
+      long previousEnd = startNanos;
+      for (Phase phase : phases) {
+        final long phaseEnd = phaseEnds.get(phase.ordinal());
+        phaseDurations.put(phase, Duration.ofNanos(phaseEnd - previousEnd));
+        previousEnd = phaseEnd;
+      }
+      record(new Trace(tenantAlias, operation, startTime, Duration.ofNanos(totalNanos),
+          phaseDurations, error == null ? null : error.toString()));
+    }
+
+  }
+
+  public static final class Trace {
+
+    private final String tenantAlias;
+    private final String operation;
+    private final Instant startTime;
+    private final Duration totalDuration;
+    private final Map<EISpan.Phase, Duration> phaseDurations;
+    private final String error;
+
+    Trace(@Nullable String tenantAlias, String operation, Instant startTime,
+        Duration totalDuration, Map<EISpan.Phase, Duration> phaseDurations,
+        @Nullable String error) {
+      this.tenantAlias = tenantAlias;
+      this.operation = operation;
+      this.startTime = startTime;
+      this.totalDuration = totalDuration;
+      this.phaseDurations = Collections.unmodifiableMap(phaseDurations);
+      this.error = error;
+    }
+
+    @Nullable
+    public String getTenantAlias() {
+      return tenantAlias;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public Instant getStartTime() {
+      return startTime;
+    }
+
+    public Duration getTotalDuration() {
+      return totalDuration;
+    }
+
+    /**
+     * @return the duration of each phase that happened, in the order they happened
+     */
+    public Map<EISpan.Phase, Duration> getPhaseDurations() {
+      return phaseDurations;
+    }
+
+    @Nullable
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder()
+          .append(startTime).append(' ')
+          .append(operation)
+          .append(" tenant[").append(tenantAlias).append("] total[")
+          .append(totalDuration.toMillis()).append("ms]");
+      phaseDurations.forEach((phase, duration) -> sb.append(' ')
+          .append(phase).append('[').append(duration.toNanos() / 1000).append("us]"));
+      if (error != null) {
+        sb.append(" error[").append(error).append(']');
+      }
+      return sb.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,55 @@
+package saasquatch.extintegration;
+
+import javax.annotation.Nullable;
+
+/**
+ * Timestamps the phases of a single outbound call.
+ *
+ * @see EITracer
+ */
+public interface EISpan {
+
+  /**
+   * {@link org.apache.hc.core5.http.protocol.HttpContext} attribute holding the span of the
+   * request
+   */
+  String CONTEXT_ATTRIBUTE = "saasquatch.extintegration.span";
+
+  EISpan NOOP = new EISpan() {
+
+    @Override
+    public void mark(Phase phase) {}
+
+    @Override
+    public void end(@Nullable Throwable error) {}
+
+  };
+
+  /**
+   * Record that the given phase just ended
+   */
+  void mark(Phase phase);
+
+  void end(@Nullable Throwable error);
+
+  /**
+   * Phases of an outbound call, usually in this order
+   */
+  enum Phase {
+    /** Waiting on {@link EISquatchAuth#getAuthHeader()} */
+    AUTH_HEADER,
+    /** Building the request body */
+    REQUEST_SERIALIZED,
+    /** Pool lease, connect and TLS handshake */
+    CONNECTED,
+    /** Sending the request until the whole response is received */
+    RESPONSE_RECEIVED,
+    /** Waiting for the response to be picked up by the executor */
+    DISPATCHED,
+    /** Content-Encoding decompression in {@link EIApacheHcUtil#getBodyBytes} */
+    BODY_DECODED,
+    /** JSON parsing */
+    PARSED
+  }
+
+}
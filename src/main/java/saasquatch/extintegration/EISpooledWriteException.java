@@ -0,0 +1,36 @@
+package saasquatch.extintegration;
+
+import java.util.Locale;
+
+/**
+ * Thrown when a write failed with a retryable error and was appended to the {@link EIWriteSpool}
+ * for replay. Callers should not retry the write themselves, since the spool will.
+ */
+public class EISpooledWriteException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String tenantAlias;
+  private final long sequence;
+
+  public EISpooledWriteException(String tenantAlias, long sequence, String reason,
+      Throwable cause) {
+    super(String.format(Locale.ROOT,
+        "Write for tenant[%s] failed with %s and was spooled as [%s] for replay",
+        tenantAlias, reason, sequence), cause);
+    this.tenantAlias = tenantAlias;
+    this.sequence = sequence;
+  }
+
+  public String getTenantAlias() {
+    return tenantAlias;
+  }
+
+  /**
+   * @return the sequence of the spooled entry
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+}
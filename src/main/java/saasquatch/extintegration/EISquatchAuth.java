@@ -2,10 +2,13 @@ package saasquatch.extintegration;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.net.HttpHeaders;
@@ -18,23 +21,47 @@ import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jwt.SignedJWT;
 import com.saasquatch.common.base.RSUrlCodec;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hc.client5.http.async.methods.SimpleBody;
 import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
 import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
@@ -42,35 +69,101 @@ import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class EISquatchAuth {
 
+  private static final Logger logger = LoggerFactory.getLogger(EISquatchAuth.class);
+
+  // Content type of spooled config updates, which are re-applied rather than sent as is
+  private static final String CONFIG_PATCH_CONTENT_TYPE =
+      "application/vnd.ei.integration-config-patch+json";
+  public static final long DEFAULT_INTEGRATION_CACHE_MAXIMUM_SIZE = 16;
+
   private final Executor executor;
   // kid -> JWK
   private final AsyncLoadingCache<String, JWK> squatchJwkCache;
   private final LoadingCache<Object, String> accessTokenCache;
   // tenantAlias -> segment integration
   private final AsyncLoadingCache<String, JsonNode> integrationInstanceCache;
+  // "sourceId sequence" of the recently applied invalidations
+  private final Cache<String, Boolean> appliedInvalidations;
+  // Identifies this instance on the invalidation bus
+  private final String instanceId = UUID.randomUUID().toString();
+  private final AtomicLong invalidationSequence = new AtomicLong();
+  private final AtomicBoolean cacheSnapshotsEnabled = new AtomicBoolean();
 
   private final EIIOBundle ioBundle;
   private final boolean https;
   private final String appDomain;
+  private final String apiBaseUrl;
   private final String clientId;
   private final String clientSecret;
   private final String jwtAudience;
   private final String jwtTokenUrl;
+  private final long integrationCacheMaximumSize;
+  @Nullable
+  private volatile EIWriteSpool writeSpool;
+  @Nullable
+  private volatile EIInvalidationBus invalidationBus;
 
   public EISquatchAuth(EIIOBundle ioBundle, boolean https, String appDomain,
       String clientId, String clientSecret, String jwtAudience, String jwtTokenUrl) {
+    this(ioBundle, https, appDomain, clientId, clientSecret, jwtAudience, jwtTokenUrl,
+        Duration.ofMinutes(1));
+  }
+
+  /**
+   * @param integrationCacheTtl how long an integration is cached. Consider raising it when an
+   *        {@link EIInvalidationBus} is in use.
+   */
+  public EISquatchAuth(EIIOBundle ioBundle, boolean https, String appDomain,
+      String clientId, String clientSecret, String jwtAudience, String jwtTokenUrl,
+      Duration integrationCacheTtl) {
+    this(ioBundle, https, appDomain, clientId, clientSecret, jwtAudience, jwtTokenUrl,
+        integrationCacheTtl, DEFAULT_INTEGRATION_CACHE_MAXIMUM_SIZE);
+  }
+
+  /**
+   * @param integrationCacheTtl how long an integration is cached. Consider raising it when an
+   *        {@link EIInvalidationBus} is in use.
+   * @param integrationCacheMaximumSize how many tenants' integrations are cached. Raise it to fit
+   *        the tenants passed to {@link #warmUp(Collection, int)} and
+   *        {@link #prefetchIntegrationConfigs(Stream, int, Consumer)}.
+   */
+  public EISquatchAuth(EIIOBundle ioBundle, boolean https, String appDomain,
+      String clientId, String clientSecret, String jwtAudience, String jwtTokenUrl,
+      Duration integrationCacheTtl, long integrationCacheMaximumSize) {
+    this(ioBundle, https, appDomain, clientId, clientSecret, jwtAudience, jwtTokenUrl,
+        integrationCacheTtl, integrationCacheMaximumSize, "https://" + appDomain);
+  }
+
+  /**
+   * @param apiBaseUrl the scheme and authority the integration and GraphQL endpoints are called
+   *        on, e.g. {@code https://app.referralsaasquatch.com}. The other constructors always use
+   *        https on the app domain, whatever {@code https} is set to. Only pass a plain http URL
+   *        to talk to a local stub, since these requests carry the access token.
+   */
+  public EISquatchAuth(EIIOBundle ioBundle, boolean https, String appDomain,
+      String clientId, String clientSecret, String jwtAudience, String jwtTokenUrl,
+      Duration integrationCacheTtl, long integrationCacheMaximumSize, String apiBaseUrl) {
+    Validate.isTrue(integrationCacheMaximumSize > 0,
+        "integrationCacheMaximumSize must be positive");
+    Validate.isTrue(apiBaseUrl.startsWith("https://") || apiBaseUrl.startsWith("http://"),
+        "apiBaseUrl must be an http or https URL");
     this.ioBundle = ioBundle;
     this.https = https;
     this.appDomain = appDomain;
+    this.apiBaseUrl = StringUtils.removeEnd(apiBaseUrl, "/");
     this.clientId = clientId;
     this.clientSecret = clientSecret;
     this.jwtAudience = jwtAudience;
     this.jwtTokenUrl = jwtTokenUrl;
+    this.integrationCacheMaximumSize = integrationCacheMaximumSize;
 
     this.executor = ioBundle.getExecutor();
     this.squatchJwkCache = Caffeine.newBuilder()
@@ -86,12 +179,16 @@ public class EISquatchAuth {
         .build(ignored -> loadAccessToken());
     this.integrationInstanceCache =
         Caffeine.newBuilder()
-            .maximumSize(16)
-            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .maximumSize(integrationCacheMaximumSize)
+            .expireAfterWrite(integrationCacheTtl.toMillis(), TimeUnit.MILLISECONDS)
             .executor(this.executor)
             .buildAsync((tenantAlias, _executor) -> {
               return loadIntegration(tenantAlias).toCompletableFuture();
             });
+    this.appliedInvalidations = Caffeine.newBuilder()
+        .maximumSize(4096)
+        .expireAfterWrite(integrationCacheTtl.toMillis(), TimeUnit.MILLISECONDS)
+        .build();
   }
 
   public void init() {
@@ -99,10 +196,261 @@ public class EISquatchAuth {
         .forEach(cache -> cache.get(ObjectUtils.NULL));
   }
 
+  /**
+   * Asynchronous alternative to {@link #init()}. Concurrently loads the access token, the JWKS
+   * and the integrations of the given tenants, and opens up to the given number of pooled
+   * connections to the app domain. The returned stage always completes normally, with the timing
+   * and the failure, if any, of each step. Only as many tenants as fit in the integration cache
+   * are loaded.
+   */
+  public CompletionStage<EIWarmUpResult> warmUp(Collection<String> hotTenantAliases,
+      int connections) {
+    final long startNanos = System.nanoTime();
+    final Map<String, Duration> stepDurations = new ConcurrentHashMap<>();
+    final Map<String, Throwable> stepErrors = new ConcurrentHashMap<>();
+    final CompletableFuture<Void> accessTokenStep = timeWarmUpStep(
+        EIWarmUpResult.STEP_ACCESS_TOKEN,
+        () -> CompletableFuture.supplyAsync(this::getCachedAccessToken, executor),
+        stepDurations, stepErrors);
+    final CompletableFuture<Void> integrationsStep = hotTenantAliases.isEmpty()
+        ? CompletableFuture.completedFuture(null)
+        : accessTokenStep.thenCompose(ignored -> timeWarmUpStep(
+            EIWarmUpResult.STEP_INTEGRATIONS, () -> {
+              if (stepErrors.containsKey(EIWarmUpResult.STEP_ACCESS_TOKEN)) {
+                throw new IllegalStateException("access token unavailable");
+              }
+              return integrationInstanceCache.getAll(limitToCacheSize(hotTenantAliases));
+            }, stepDurations, stepErrors));
+    final CompletableFuture<Void> jwksStep = timeWarmUpStep(EIWarmUpResult.STEP_JWKS,
+        () -> loadSquatchJwks().thenAccept(jwks -> {
+          for (JWK jwk : jwks.getKeys()) {
+            if (jwk.getKeyID() != null) {
+              squatchJwkCache.put(jwk.getKeyID(), CompletableFuture.completedFuture(jwk));
+            }
+          }
+        }), stepDurations, stepErrors);
+    final CompletableFuture<Void> connectionsStep = connections <= 0
+        ? CompletableFuture.completedFuture(null)
+        : timeWarmUpStep(EIWarmUpResult.STEP_CONNECTIONS, () -> openConnections(connections),
+            stepDurations, stepErrors);
+    return CompletableFuture.allOf(accessTokenStep, integrationsStep, jwksStep, connectionsStep)
+        .thenApply(ignored -> {
+          final Map<String, Duration> orderedDurations = new LinkedHashMap<>();
+          Stream.of(EIWarmUpResult.STEP_ACCESS_TOKEN, EIWarmUpResult.STEP_JWKS,
+                  EIWarmUpResult.STEP_INTEGRATIONS, EIWarmUpResult.STEP_CONNECTIONS)
+              .filter(stepDurations::containsKey)
+              .forEach(step -> orderedDurations.put(step, stepDurations.get(step)));
+          return new EIWarmUpResult(Duration.ofNanos(System.nanoTime() - startNanos),
+              orderedDurations, stepErrors);
+        });
+  }
+
+  private Collection<String> limitToCacheSize(Collection<String> tenantAliases) {
+    if (tenantAliases.size() <= integrationCacheMaximumSize) {
+      return tenantAliases;
+    }
+    logger.warn("Warming up only {} of {} tenants, since that is the integration cache size",
+        integrationCacheMaximumSize, tenantAliases.size());
+    return tenantAliases.stream()
+        .limit(integrationCacheMaximumSize)
+        .collect(Collectors.toList());
+  }
+
+  private static CompletableFuture<Void> timeWarmUpStep(String step,
+      Supplier<? extends CompletionStage<?>> action, Map<String, Duration> stepDurations,
+      Map<String, Throwable> stepErrors) {
+    final long startNanos = System.nanoTime();
+    CompletionStage<?> stage;
+    try {
+      stage = action.get();
+    } catch (RuntimeException e) {
+      final CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      stage = failed;
+    }
+    return stage.<Void>handle((ignored, ex) -> {
+      stepDurations.put(step, Duration.ofNanos(System.nanoTime() - startNanos));
+      if (ex != null) {
+        stepErrors.put(step,
+            ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+      }
+      return null;
+    }).toCompletableFuture();
+  }
+
+  /**
+   * Send concurrent HEAD requests to the API base URL so the async client pool holds open
+   * connections for the integration and GraphQL calls. The responses themselves are ignored.
+   */
+  private CompletableFuture<Void> openConnections(int connections) {
+    final CompletableFuture<?>[] respPromises = new CompletableFuture<?>[connections];
+    for (int i = 0; i < connections; i++) {
+      final SimpleHttpRequest request = SimpleRequestBuilder.head(
+              getApiBaseUrl() + "/.well-known/jwks.json")
+          .setRequestConfig(RequestConfig.custom()
+              .setConnectionRequestTimeout(2500, TimeUnit.MILLISECONDS)
+              .setResponseTimeout(5, TimeUnit.SECONDS)
+              .build())
+          .build();
+      final CompletableFuture<SimpleHttpResponse> respPromise = new CompletableFuture<>();
+      ioBundle.getHttpAsyncClient().execute(request,
+          EIApacheHcUtil.completableFuture(respPromise));
+      respPromises[i] = respPromise;
+    }
+    return CompletableFuture.allOf(respPromises);
+  }
+
+  /**
+   * Publish integration cache invalidations to the given {@link EIInvalidationBus}, and apply the
+   * invalidations published by other nodes.
+   */
+  public void setInvalidationBus(@Nullable EIInvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+    if (invalidationBus != null) {
+      invalidationBus.subscribe(this::onInvalidation);
+    }
+  }
+
+  private void onInvalidation(EIInvalidationBus.Invalidation invalidation) {
+    if (instanceId.equals(invalidation.getSourceId())) {
+      return;
+    }
+    // Datagrams can be duplicated. Reordered ones are still applied, since an invalidation only
+    // forces a reload.
+    final String key = invalidation.getSourceId() + ' ' + invalidation.getSequence();
+    if (appliedInvalidations.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+      return;
+    }
+    integrationInstanceCache.synchronous().invalidate(invalidation.getTenantAlias());
+  }
+
+  /**
+   * Restore the caches from the given snapshot file if it exists, then write the snapshot
+   * periodically and when the {@link EIIOBundle} is closed. Can only be called once.
+   */
+  public void enableCacheSnapshots(Path snapshotFile, Duration interval) {
+    if (!cacheSnapshotsEnabled.compareAndSet(false, true)) {
+      throw new IllegalStateException("cache snapshots already enabled");
+    }
+    try {
+      final EICacheSnapshot snapshot = EICacheSnapshot.readFrom(snapshotFile);
+      if (snapshot != null) {
+        restoreCaches(snapshot);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Unable to restore cache snapshot from [{}]", snapshotFile, e);
+    }
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread t = new Thread(r, "ei-cache-snapshot");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.scheduleWithFixedDelay(() -> writeCacheSnapshot(snapshotFile),
+        interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    ioBundle.registerCloseable(() -> {
+      scheduler.shutdown();
+      writeCacheSnapshot(snapshotFile);
+    });
+  }
+
+  private void writeCacheSnapshot(Path snapshotFile) {
+    try {
+      snapshotCaches().writeTo(snapshotFile);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Unable to write cache snapshot to [{}]", snapshotFile, e);
+    }
+  }
+
+  /**
+   * @return a copy of the currently loaded access token, JWKS and integrations
+   */
+  public EICacheSnapshot snapshotCaches() {
+    final Map<String, String> jwks = new LinkedHashMap<>();
+    squatchJwkCache.synchronous().asMap()
+        .forEach((kid, jwk) -> jwks.put(kid, jwk.toJSONString()));
+    return new EICacheSnapshot(accessTokenCache.getIfPresent(ObjectUtils.NULL), jwks,
+        integrationInstanceCache.synchronous().asMap());
+  }
+
+  /**
+   * Populate the caches from a snapshot. Restored entries are served right away but are treated
+   * as stale, so each of them is refreshed in the background. The JWKS is fetched once for all
+   * the restored keys.
+   */
+  public void restoreCaches(EICacheSnapshot snapshot) {
+    final String accessToken = snapshot.getAccessToken();
+    if (accessToken != null && !isExpiredJwt(accessToken)) {
+      accessTokenCache.put(ObjectUtils.NULL, accessToken);
+      accessTokenCache.refresh(ObjectUtils.NULL);
+    }
+    final List<String> restoredKids = new ArrayList<>();
+    snapshot.getJwks().forEach((kid, jwkJson) -> {
+      final JWK jwk;
+      try {
+        jwk = JWK.parse(jwkJson);
+      } catch (ParseException e) {
+        logger.warn("Unable to restore JWK for kid[{}]", kid, e);
+        return;
+      }
+      squatchJwkCache.put(kid, CompletableFuture.completedFuture(jwk));
+      restoredKids.add(kid);
+    });
+    if (!restoredKids.isEmpty()) {
+      refreshRestoredJwks(restoredKids);
+    }
+    snapshot.getIntegrations().forEach((tenantAlias, integration) -> {
+      integrationInstanceCache.put(tenantAlias, CompletableFuture.completedFuture(integration));
+      integrationInstanceCache.synchronous().refresh(tenantAlias);
+    });
+  }
+
+  /**
+   * Replace the restored keys from a single JWKS fetch. Like a refresh of each key, keys that are
+   * no longer in the JWKS are removed, and the restored ones are kept if the fetch fails.
+   */
+  private void refreshRestoredJwks(List<String> kids) {
+    final CompletionStage<JWKSet> jwksPromise;
+    try {
+      jwksPromise = loadSquatchJwks();
+    } catch (RuntimeException e) {
+      logger.warn("Unable to refresh restored JWKS", e);
+      return;
+    }
+    jwksPromise.whenComplete((jwks, ex) -> {
+      if (ex != null) {
+        logger.warn("Unable to refresh restored JWKS", ex);
+        return;
+      }
+      for (String kid : kids) {
+        final JWK jwk = jwks.getKeyByKeyId(kid);
+        if (jwk == null) {
+          squatchJwkCache.synchronous().invalidate(kid);
+        } else {
+          squatchJwkCache.put(kid, CompletableFuture.completedFuture(jwk));
+        }
+      }
+    });
+  }
+
+  private static boolean isExpiredJwt(String token) {
+    final Date exp;
+    try {
+      exp = SignedJWT.parse(token).getJWTClaimsSet().getExpirationTime();
+    } catch (ParseException e) {
+      // Not a JWT. Let the background refresh replace it.
+      return false;
+    }
+    return exp != null && exp.before(new Date());
+  }
+
   public String getAppDomain() {
     return appDomain;
   }
 
+  public String getApiBaseUrl() {
+    return apiBaseUrl;
+  }
+
   public String getClientId() {
     return clientId;
   }
@@ -111,6 +459,24 @@ public class EISquatchAuth {
     return clientSecret;
   }
 
+  /**
+   * Spool mutating requests that fail with a timeout, a connection failure or a 5xx to the given {@link EIWriteSpool},
+   * and replay them in the background. The failed call completes with an
+   * {@link EISpooledWriteException} and should not be retried by the caller.
+   * <p>
+   * Config updates are spooled as the config that was passed in, and replay merges it into the
+   * integration as it is at replay time. A spooled config update is discarded once an update for
+   * the same tenant that started after it was spooled succeeds and overwrites every key it sets.
+   * GraphQL mutations are replayed as is and at-least-once, since one that timed out may already
+   * have been applied.
+   */
+  public void setWriteSpool(@Nullable EIWriteSpool writeSpool) {
+    this.writeSpool = writeSpool;
+    if (writeSpool != null) {
+      writeSpool.startReplay(this::replaySpooledWrite);
+    }
+  }
+
   /**
    * @see EIAuth#verifyTenantScopedToken(Function, String, String)
    */
@@ -177,25 +543,37 @@ public class EISquatchAuth {
   }
 
   public CompletionStage<JWK> loadJwkForSquatchJwks(String kid) {
-    final String protocol = https ? "https://" : "http://";
-    final SimpleHttpRequest request = SimpleRequestBuilder.get(
-            protocol + getAppDomain() + "/.well-known/jwks.json")
-        .setRequestConfig(RequestConfig.custom()
-            .setConnectionRequestTimeout(2500, TimeUnit.MILLISECONDS)
-            .setResponseTimeout(5, TimeUnit.SECONDS)
-            .build())
-        .build();
-    final CompletableFuture<SimpleHttpResponse> cf = new CompletableFuture<>();
-    ioBundle.getHttpAsyncClient().execute(request, EIApacheHcUtil.completableFuture(cf));
+    return loadSquatchJwks().thenApply(jwks -> jwks.getKeyByKeyId(kid));
+  }
+
+  public CompletionStage<JWKSet> loadSquatchJwks() {
+    final EISpan span = ioBundle.getTracer().startSpan(null, "loadSquatchJwks");
+    final CompletableFuture<SimpleHttpResponse> cf;
+    try {
+      final String protocol = https ? "https://" : "http://";
+      final SimpleHttpRequest request = SimpleRequestBuilder.get(
+              protocol + getAppDomain() + "/.well-known/jwks.json")
+          .setRequestConfig(RequestConfig.custom()
+              .setConnectionRequestTimeout(2500, TimeUnit.MILLISECONDS)
+              .setResponseTimeout(5, TimeUnit.SECONDS)
+              .build())
+          .build();
+      cf = EIApacheHcUtil.execute(ioBundle.getHttpAsyncClient(), request, span);
+    } catch (RuntimeException e) {
+      span.end(e);
+      throw e;
+    }
     return cf.thenApplyAsync(resp -> {
+      span.mark(EISpan.Phase.DISPATCHED);
       final JWKSet jwks;
       try {
         jwks = JWKSet.parse(resp.getBodyText());
       } catch (ParseException e) {
         throw new RuntimeException(e);
       }
-      return jwks.getKeyByKeyId(kid);
-    }, executor);
+      span.mark(EISpan.Phase.PARSED);
+      return jwks;
+    }, executor).whenComplete((ignored, ex) -> span.end(ex));
   }
 
   public JWK getCachedJwkForKid(String kid) {
@@ -208,6 +586,7 @@ public class EISquatchAuth {
         .put("client_secret", getClientSecret())
         .put("audience", jwtAudience)
         .put("grant_type", "client_credentials");
+    final EISpan span = ioBundle.getTracer().startSpan(null, "loadAccessToken");
     try {
       final HttpPost request = new HttpPost(jwtTokenUrl);
       request.setConfig(RequestConfig.custom()
@@ -216,23 +595,32 @@ public class EISquatchAuth {
           .build());
       request.setEntity(new ByteArrayEntity(EIJson.mapper().writeValueAsBytes(bodyJson),
           ContentType.APPLICATION_JSON));
-      return ioBundle.getHttpClient().execute(request, resp -> {
+      span.mark(EISpan.Phase.REQUEST_SERIALIZED);
+      final String accessToken = ioBundle.getHttpClient().execute(request, resp -> {
         final int status = resp.getCode();
         final String respBody = EntityUtils.toString(resp.getEntity(), UTF_8);
+        span.mark(EISpan.Phase.RESPONSE_RECEIVED);
         if (status >= 300) {
           throw new IllegalStateException(String.format(Locale.ROOT,
               "status[%s] received from [%s]. Response body: %s",
               status, jwtTokenUrl, respBody));
         }
         final JsonNode respJson = EIJson.mapper().readTree(respBody);
-        final String accessToken = respJson.path("access_token").textValue();
-        if (StringUtils.isBlank(accessToken)) {
+        span.mark(EISpan.Phase.PARSED);
+        final String respAccessToken = respJson.path("access_token").textValue();
+        if (StringUtils.isBlank(respAccessToken)) {
           throw new RuntimeException("access_token is blank");
         }
-        return accessToken;
+        return respAccessToken;
       });
+      span.end(null);
+      return accessToken;
     } catch (IOException e) {
+      span.end(e);
       throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      span.end(e);
+      throw e;
     }
   }
 
@@ -245,26 +633,38 @@ public class EISquatchAuth {
   }
 
   public CompletionStage<JsonNode> loadIntegration(String tenantAlias) {
-    final String url = String.format(Locale.ROOT, "https://%s/api/v1/%s/integration/%s",
-        getAppDomain(), tenantAlias, RSUrlCodec.encode(getClientId()));
-    final SimpleHttpRequest request = SimpleRequestBuilder.get(url)
-        .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
-        .setHeader(HttpHeaders.AUTHORIZATION, getAuthHeader())
-        .build();
-    final CompletableFuture<SimpleHttpResponse> respPromise = new CompletableFuture<>();
-    ioBundle.getHttpAsyncClient().execute(request,
-        EIApacheHcUtil.completableFuture(respPromise));
+    final String url = String.format(Locale.ROOT, "%s/api/v1/%s/integration/%s",
+        getApiBaseUrl(), tenantAlias, RSUrlCodec.encode(getClientId()));
+    final EISpan span = ioBundle.getTracer().startSpan(tenantAlias, "loadIntegration");
+    final SimpleHttpRequest request;
+    final CompletableFuture<SimpleHttpResponse> respPromise;
+    try {
+      final String authHeader = getAuthHeader();
+      span.mark(EISpan.Phase.AUTH_HEADER);
+      request = SimpleRequestBuilder.get(url)
+          .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
+          .setHeader(HttpHeaders.AUTHORIZATION, authHeader)
+          .build();
+      respPromise = EIApacheHcUtil.execute(ioBundle.getHttpAsyncClient(), request, span);
+    } catch (RuntimeException e) {
+      span.end(e);
+      throw e;
+    }
     return respPromise.thenApplyAsync(resp -> {
+      span.mark(EISpan.Phase.DISPATCHED);
       final JsonNode respJson;
       try {
         final int status = resp.getCode();
         if (status < 300) {
-          respJson = EIJson.mapper().readTree(EIApacheHcUtil.getBodyBytes(resp));
+          final byte[] bodyBytes = EIApacheHcUtil.getBodyBytes(resp);
+          span.mark(EISpan.Phase.BODY_DECODED);
+          respJson = EIJson.mapper().readTree(bodyBytes);
+          span.mark(EISpan.Phase.PARSED);
         } else if (status == HttpStatus.SC_NOT_FOUND) {
           respJson = null;
         } else {
           final String respBody = EIApacheHcUtil.getBodyText(resp);
-          throw new RuntimeException(
+          throw new EIHttpStatusException(status,
               String.format(Locale.ROOT, "status[%s] received from [%s]. Response: %s",
                   status, request.getUri(), respBody));
         }
@@ -274,15 +674,29 @@ public class EISquatchAuth {
         throw new RuntimeException(e);
       }
       return respJson;
-    }, executor);
+    }, executor).whenComplete((ignored, ex) -> span.end(ex));
   }
 
   public CompletionStage<JsonNode> getCachedIntegration(String tenantAlias) {
     return integrationInstanceCache.get(tenantAlias);
   }
 
+  /**
+   * Invalidate the cached integration of the given tenant on this node, and on other nodes if an
+   * {@link EIInvalidationBus} is set.
+   */
   public void clearIntegrationCache(String tenantAlias) {
     integrationInstanceCache.synchronous().invalidate(tenantAlias);
+    final EIInvalidationBus invalidationBus = this.invalidationBus;
+    if (invalidationBus != null) {
+      final long sequence = invalidationSequence.incrementAndGet();
+      try {
+        invalidationBus.publish(
+            new EIInvalidationBus.Invalidation(instanceId, tenantAlias, sequence));
+      } catch (RuntimeException e) {
+        logger.warn("Unable to publish invalidation for tenant[{}]", tenantAlias, e);
+      }
+    }
   }
 
   public CompletionStage<JsonNode> getCachedIntegrationConfig(String tenantAlias) {
@@ -290,6 +704,40 @@ public class EISquatchAuth {
         .thenApplyAsync(EISquatchAuth::getIntegrationConfigFromIntegration, executor);
   }
 
+  /**
+   * Load the integration configs of many tenants through the integration cache, with at most
+   * {@code maxInFlight} loads at a time. Tenant aliases are pulled from the stream only as loads
+   * complete, and each result is passed to the consumer as soon as it is available, possibly from
+   * different threads. A failed tenant is reported through its result and does not stop the run.
+   * Loading more tenants than the integration cache holds evicts earlier ones; use
+   * {@link #prefetchIntegrationConfigs(Stream, int, boolean, Consumer)} to only stream the results.
+   *
+   * @return a stage that completes once every tenant has been processed, or exceptionally if the
+   *         stream fails. Cancelling it stops new loads from being started.
+   */
+  public CompletionStage<Void> prefetchIntegrationConfigs(Stream<String> tenantAliases,
+      int maxInFlight, Consumer<? super EIIntegrationConfigResult> resultConsumer) {
+    return prefetchIntegrationConfigs(tenantAliases, maxInFlight, true, resultConsumer);
+  }
+
+  /**
+   * @param populateCache whether to load through the integration cache. If false, every tenant is
+   *        loaded from the API and the cache is left untouched.
+   * @see #prefetchIntegrationConfigs(Stream, int, Consumer)
+   */
+  public CompletionStage<Void> prefetchIntegrationConfigs(Stream<String> tenantAliases,
+      int maxInFlight, boolean populateCache,
+      Consumer<? super EIIntegrationConfigResult> resultConsumer) {
+    Validate.isTrue(maxInFlight > 0, "maxInFlight must be positive");
+    final Function<String, CompletableFuture<JsonNode>> integrationLoader = populateCache
+        ? integrationInstanceCache::get
+        : tenantAlias -> loadIntegration(tenantAlias).toCompletableFuture();
+    return new EIIntegrationPrefetch(tenantAliases.iterator(),
+        tenantAlias -> integrationLoader.apply(tenantAlias)
+            .thenApply(EISquatchAuth::getIntegrationConfigFromIntegration),
+        maxInFlight, resultConsumer).start();
+  }
+
   public CompletionStage<JsonNode> loadIntegrationConfig(String tenantAlias) {
     return loadIntegration(tenantAlias)
         .thenApplyAsync(EISquatchAuth::getIntegrationConfigFromIntegration, executor);
@@ -307,42 +755,39 @@ public class EISquatchAuth {
         .orElseGet(JsonNodeFactory.instance::objectNode);
   }
 
+  /**
+   * Merge the given config into the tenant's integration. If a write spool is set and the update
+   * fails with a timeout, a connection failure or a 5xx, including when loading the integration
+   * first, the config is spooled and the returned stage fails with an
+   * {@link EISpooledWriteException}.
+   */
   public CompletionStage<JsonNode> updateIntegrationConfig(String tenantAlias,
       JsonNode integrationConfig) {
-    return loadIntegration(tenantAlias)
+    final EISpan span = ioBundle.getTracer().startSpan(tenantAlias, "updateIntegrationConfig");
+    final EIWriteSpool writeSpool = this.writeSpool;
+    // Entries spooled before this point belong to updates that this one supersedes
+    final long spoolSequenceAtStart = writeSpool == null ? 0 : writeSpool.getNextSequence();
+    final CompletableFuture<JsonNode> integrationPromise;
+    try {
+      integrationPromise = spoolOnFailure(tenantAlias, Method.PUT.name(),
+          integrationUrl(tenantAlias), CONFIG_PATCH_CONTENT_TYPE,
+          EIJson.toBytes(integrationConfig), loadIntegration(tenantAlias).toCompletableFuture(),
+          integration -> null);
+    } catch (RuntimeException e) {
+      span.end(e);
+      throw e;
+    }
+    return integrationPromise
         .thenApplyAsync(ObjectNode.class::cast, executor)
         .thenComposeAsync(integration -> {
           if (integration == null) {
             throw new IllegalStateException(
                 String.format(Locale.ROOT, "Tenant[%s] does not have an integration", tenantAlias));
           }
-          final JsonNode originalConfig = Optional.ofNullable(integration.get("config"))
-              .orElseGet(JsonNodeFactory.instance::objectNode);
-          final JsonNode updatedConfig;
-          try {
-            updatedConfig = EIJson.mapper().updateValue(originalConfig, integrationConfig);
-          } catch (IOException e) {
-            throw new UncheckedIOException(e);
-          }
-          integration.set("config", updatedConfig);
-          final byte[] bodyBytes;
-          try {
-            bodyBytes = EIJson.mapper().writeValueAsBytes(integration);
-          } catch (IOException e) {
-            throw new UncheckedIOException(e);
-          }
-          final SimpleHttpRequest putReq = SimpleRequestBuilder.put(String.format(
-                  Locale.ROOT, "https://%s/api/v1/%s/integration", getAppDomain(), tenantAlias))
-              .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
-              .setHeader(HttpHeaders.AUTHORIZATION, getAuthHeader())
-              .setBody(bodyBytes, ContentType.APPLICATION_JSON)
-              .build();
-          final CompletableFuture<SimpleHttpResponse> respPromise = new CompletableFuture<>();
-          ioBundle.getHttpAsyncClient().execute(putReq,
-              EIApacheHcUtil.completableFuture(respPromise));
-          return respPromise;
+          return putIntegrationConfig(tenantAlias, integration, integrationConfig, span, true);
         }, executor)
         .thenApplyAsync(resp -> {
+          span.mark(EISpan.Phase.DISPATCHED);
           final int status = resp.getCode();
           if (status > 299) {
             final String respBody;
@@ -356,39 +801,186 @@ public class EISquatchAuth {
                 status, respBody));
           }
           try {
+            if (writeSpool != null) {
+              discardSupersededConfigUpdates(writeSpool, tenantAlias, spoolSequenceAtStart,
+                  integrationConfig);
+            }
             clearIntegrationCache(tenantAlias);
-            return EIJson.mapper().readTree(EIApacheHcUtil.getBodyBytes(resp));
+            final byte[] respBodyBytes = EIApacheHcUtil.getBodyBytes(resp);
+            span.mark(EISpan.Phase.BODY_DECODED);
+            final JsonNode respJson = EIJson.mapper().readTree(respBodyBytes);
+            span.mark(EISpan.Phase.PARSED);
+            return respJson;
           } catch (IOException e) {
             throw new UncheckedIOException(e);
           }
-        }, executor);
+        }, executor)
+        .whenComplete((ignored, ex) -> span.end(ex));
   }
 
-  public CompletionStage<EIGraphQLResponse> graphQL(String tenantAlias, String query,
-      String operationName, JsonNode variables) {
-    final ObjectNode reqJson = JsonNodeFactory.instance.objectNode();
-    reqJson.put("query", Validate.notBlank(query));
-    if (operationName != null) {
-      reqJson.put("operationName", operationName);
-    }
-    if (EIJson.nonEmpty(variables)) {
-      reqJson.set("variables", variables);
+  /**
+   * PUT the given freshly loaded integration with the given config merged into its config, which
+   * modifies it. With {@code spool},
+   * a retryable failure spools the config itself rather than the merged integration, so that a
+   * replay re-applies it to the integration as it is at that time.
+   */
+  private CompletableFuture<SimpleHttpResponse> putIntegrationConfig(String tenantAlias,
+      ObjectNode integration, JsonNode integrationConfig, EISpan span, boolean spool) {
+    final JsonNode originalConfig = Optional.ofNullable(integration.get("config"))
+        .orElseGet(JsonNodeFactory.instance::objectNode);
+    final JsonNode updatedConfig;
+    try {
+      updatedConfig = EIJson.mapper().updateValue(originalConfig, integrationConfig);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
+    integration.set("config", updatedConfig);
     final byte[] bodyBytes;
     try {
-      bodyBytes = EIJson.mapper().writeValueAsBytes(reqJson);
+      bodyBytes = EIJson.mapper().writeValueAsBytes(integration);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
-    final SimpleHttpRequest gqlReq = SimpleRequestBuilder.post(String.format(
-            Locale.ROOT, "https://%s/api/v1/%s/graphql", getAppDomain(), tenantAlias))
+    span.mark(EISpan.Phase.REQUEST_SERIALIZED);
+    final String authHeader = getAuthHeader();
+    span.mark(EISpan.Phase.AUTH_HEADER);
+    final String url = integrationUrl(tenantAlias);
+    final SimpleHttpRequest putReq = SimpleRequestBuilder.put(url)
         .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
-        .setHeader(HttpHeaders.AUTHORIZATION, getAuthHeader())
+        .setHeader(HttpHeaders.AUTHORIZATION, authHeader)
         .setBody(bodyBytes, ContentType.APPLICATION_JSON)
         .build();
-    final CompletableFuture<SimpleHttpResponse> respPromise = new CompletableFuture<>();
-    ioBundle.getHttpAsyncClient().execute(gqlReq, EIApacheHcUtil.completableFuture(respPromise));
+    final CompletableFuture<SimpleHttpResponse> respPromise =
+        EIApacheHcUtil.execute(ioBundle.getHttpAsyncClient(), putReq, span);
+    if (!spool) {
+      return respPromise;
+    }
+    return spoolOnFailure(tenantAlias, Method.PUT.name(), url, CONFIG_PATCH_CONTENT_TYPE,
+        EIJson.toBytes(integrationConfig), respPromise, EISquatchAuth::serverErrorReason);
+  }
+
+  private String integrationUrl(String tenantAlias) {
+    return String.format(Locale.ROOT, "%s/api/v1/%s/integration",
+        getApiBaseUrl(), tenantAlias);
+  }
+
+  /**
+   * Discard the config updates spooled before the given successful one whose every key the
+   * successful one overwrites. Others still have to be replayed, since config updates are merged.
+   */
+  private static void discardSupersededConfigUpdates(EIWriteSpool writeSpool,
+      String tenantAlias, long spoolSequenceAtStart, JsonNode integrationConfig) {
+    final int discarded = writeSpool.discard(tenantAlias,
+        entry -> entry.getSequence() < spoolSequenceAtStart
+            && CONFIG_PATCH_CONTENT_TYPE.equals(entry.getContentType())
+            && coversConfigUpdate(integrationConfig, readConfigUpdate(entry)));
+    if (discarded > 0) {
+      logger.info("Discarded {} spooled config updates for tenant[{}] superseded by a newer update",
+          discarded, tenantAlias);
+    }
+  }
+
+  private static JsonNode readConfigUpdate(EIWriteSpool.Entry entry) {
+    try {
+      return EIJson.mapper().readTree(entry.getBody());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return whether merging {@code newer} after {@code older} gives the same config as merging
+   *         {@code newer} alone
+   */
+  private static boolean coversConfigUpdate(JsonNode newer, JsonNode older) {
+    if (older.isObject() && newer.isObject()) {
+      final Iterator<Map.Entry<String, JsonNode>> fieldsIter = older.fields();
+      while (fieldsIter.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fieldsIter.next();
+        final JsonNode newerValue = newer.get(field.getKey());
+        if (newerValue == null || !coversConfigUpdate(newerValue, field.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // Merging an array into an array appends to it
+    return !(older.isArray() && newer.isArray());
+  }
+
+  public CompletionStage<EIGraphQLResponse> graphQL(String tenantAlias, String query,
+      String operationName, JsonNode variables) {
+    return executeGraphQL(tenantAlias, query, operationName, variables,
+        respBodyBytes -> EIJson.mapper().readValue(respBodyBytes, EIGraphQLResponse.class));
+  }
+
+  /**
+   * Same as {@link #graphQL(String, String, String, JsonNode)}, except that {@code data} is
+   * deserialized into the given type straight from the response bytes, without an intermediate
+   * tree.
+   */
+  public <T> CompletionStage<EIGraphQLTypedResponse<T>> graphQL(String tenantAlias,
+      String query, String operationName, JsonNode variables, JavaType dataType) {
+    return executeGraphQL(tenantAlias, query, operationName, variables,
+        respBodyBytes -> EIGraphQLTypedResponse.<T>parse(respBodyBytes, dataType));
+  }
+
+  /**
+   * @see #graphQL(String, String, String, JsonNode, JavaType)
+   */
+  public <T> CompletionStage<EIGraphQLTypedResponse<T>> graphQL(String tenantAlias,
+      String query, String operationName, JsonNode variables, TypeReference<T> dataType) {
+    return graphQL(tenantAlias, query, operationName, variables,
+        EIJson.mapper().getTypeFactory().constructType(dataType));
+  }
+
+  /**
+   * Same as {@link #graphQL(String, String, String, JsonNode)}, except that the response is kept
+   * as bytes and {@code data} and {@code errors} are only parsed when accessed.
+   */
+  public CompletionStage<EILazyGraphQLResponse> graphQLLazy(String tenantAlias, String query,
+      String operationName, JsonNode variables) {
+    return executeGraphQL(tenantAlias, query, operationName, variables,
+        EILazyGraphQLResponse::new);
+  }
+
+  private <R> CompletionStage<R> executeGraphQL(String tenantAlias, String query,
+      String operationName, JsonNode variables, GraphQLResponseParser<R> responseParser) {
+    final EISpan span = ioBundle.getTracer().startSpan(tenantAlias,
+        operationName == null ? "graphQL" : "graphQL:" + operationName);
+    final CompletableFuture<SimpleHttpResponse> respPromise;
+    try {
+      final ObjectNode reqJson = JsonNodeFactory.instance.objectNode();
+      reqJson.put("query", Validate.notBlank(query));
+      if (operationName != null) {
+        reqJson.put("operationName", operationName);
+      }
+      if (EIJson.nonEmpty(variables)) {
+        reqJson.set("variables", variables);
+      }
+      final String authHeader = getAuthHeader();
+      span.mark(EISpan.Phase.AUTH_HEADER);
+      final byte[] bodyBytes = EIJson.mapper().writeValueAsBytes(reqJson);
+      span.mark(EISpan.Phase.REQUEST_SERIALIZED);
+      final SimpleHttpRequest gqlReq = SimpleRequestBuilder.post(String.format(Locale.ROOT,
+              "%s/api/v1/%s/graphql", getApiBaseUrl(), tenantAlias))
+          .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
+          .setHeader(HttpHeaders.AUTHORIZATION, authHeader)
+          .setBody(bodyBytes, ContentType.APPLICATION_JSON)
+          .build();
+      respPromise = isMutation(query, operationName)
+          ? spoolOnFailure(tenantAlias, gqlReq,
+              EIApacheHcUtil.execute(ioBundle.getHttpAsyncClient(), gqlReq, span))
+          : EIApacheHcUtil.execute(ioBundle.getHttpAsyncClient(), gqlReq, span);
+    } catch (IOException e) {
+      span.end(e);
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      span.end(e);
+      throw e;
+    }
     return respPromise.thenApplyAsync(resp -> {
+      span.mark(EISpan.Phase.DISPATCHED);
       final int status = resp.getCode();
       if (status > 299) {
         String bodyText = "";
@@ -401,12 +993,179 @@ public class EISquatchAuth {
             status, tenantAlias, bodyText));
       }
       try {
-        return EIJson.mapper().readValue(EIApacheHcUtil.getBodyBytes(resp),
-            EIGraphQLResponse.class);
+        final byte[] respBodyBytes = EIApacheHcUtil.getBodyBytes(resp);
+        span.mark(EISpan.Phase.BODY_DECODED);
+        final R gqlResp = responseParser.parse(respBodyBytes);
+        span.mark(EISpan.Phase.PARSED);
+        return gqlResp;
       } catch (IOException e) {
         throw new UncheckedIOException(e);
       }
+    }, executor).whenComplete((ignored, ex) -> span.end(ex));
+  }
+
+  /**
+   * Page through the records of a GraphQL query. The first page is requested immediately, and up
+   * to {@code maxBufferedPages} pages are fetched ahead of the consumer. Close the returned pager
+   * to stop early.
+   */
+  public EIGraphQLPager graphQLPages(String tenantAlias, String query,
+      @Nullable String operationName, @Nullable JsonNode variables, EIGraphQLPaging paging,
+      int maxBufferedPages) {
+    Validate.isTrue(maxBufferedPages > 0, "maxBufferedPages must be positive");
+    final ObjectNode firstVariables;
+    if (EIJson.isNull(variables)) {
+      firstVariables = JsonNodeFactory.instance.objectNode();
+    } else if (variables.isObject()) {
+      firstVariables = ((ObjectNode) variables).deepCopy();
+    } else {
+      throw new IllegalArgumentException("GraphQL variables must be an object");
+    }
+    final EIGraphQLPager pager = new EIGraphQLPager(this, tenantAlias, query, operationName,
+        paging.firstVariables(firstVariables), paging, maxBufferedPages);
+    pager.start();
+    return pager;
+  }
+
+  private static boolean isMutation(String query, @Nullable String operationName) {
+    return EIGraphQLOperations.MUTATION.equals(
+        EIGraphQLOperations.operationType(query, operationName));
+  }
+
+  private CompletableFuture<SimpleHttpResponse> spoolOnFailure(String tenantAlias,
+      SimpleHttpRequest request, CompletableFuture<SimpleHttpResponse> respPromise) {
+    final SimpleBody body = request.getBody();
+    final String uri;
+    try {
+      uri = request.getUri().toString();
+    } catch (URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+    return spoolOnFailure(tenantAlias, request.getMethod(), uri,
+        body == null || body.getContentType() == null ? null : body.getContentType().toString(),
+        body == null ? new byte[0] : body.getBodyBytes(), respPromise,
+        EISquatchAuth::serverErrorReason);
+  }
+
+  @Nullable
+  private static String serverErrorReason(SimpleHttpResponse resp) {
+    return resp.getCode() >= HttpStatus.SC_SERVER_ERROR ? "status[" + resp.getCode() + "]" : null;
+  }
+
+  /**
+   * Append the given write to the write spool, if there is one, when the given stage fails with a
+   * timeout, a connection failure or a 5xx, or when {@code failureReason} returns a reason for its
+   * result. The returned stage then fails with an {@link EISpooledWriteException}, so the caller
+   * does not retry a write that the spool will replay. The spool is written on the executor, since
+   * it forces the write to disk.
+   */
+  private <T> CompletableFuture<T> spoolOnFailure(String tenantAlias, String method, String uri,
+      @Nullable String contentType, byte[] body, CompletableFuture<T> promise,
+      Function<? super T, String> failureReason) {
+    final EIWriteSpool writeSpool = this.writeSpool;
+    if (writeSpool == null) {
+      return promise;
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    promise.whenCompleteAsync((value, ex) -> {
+      final Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+          ? ex.getCause() : ex;
+      final String reason = cause != null
+          ? isRetryableFailure(cause) ? cause.toString() : null
+          : failureReason.apply(value);
+      if (reason == null) {
+        if (cause != null) {
+          result.completeExceptionally(cause);
+        } else {
+          result.complete(value);
+        }
+        return;
+      }
+      final EIWriteSpool.Entry entry;
+      try {
+        entry = writeSpool.append(tenantAlias, method, uri, contentType, body);
+      } catch (RuntimeException e) {
+        logger.error("Unable to spool failed [{}] for tenant[{}]", method, tenantAlias, e);
+        if (cause != null) {
+          result.completeExceptionally(cause);
+        } else {
+          result.complete(value);
+        }
+        return;
+      }
+      result.completeExceptionally(
+          new EISpooledWriteException(tenantAlias, entry.getSequence(), reason, cause));
     }, executor);
+    return result;
+  }
+
+  private static boolean isRetryableFailure(Throwable cause) {
+    if (cause instanceof UncheckedIOException && cause.getCause() != null) {
+      return isRetryableFailure(cause.getCause());
+    }
+    if (cause instanceof EIHttpStatusException) {
+      return ((EIHttpStatusException) cause).getStatus() >= HttpStatus.SC_SERVER_ERROR;
+    }
+    return cause instanceof InterruptedIOException || cause instanceof TimeoutException
+        || cause instanceof ConnectException || cause instanceof NoRouteToHostException;
+  }
+
+  private CompletionStage<SimpleHttpResponse> replaySpooledWrite(EIWriteSpool.Entry entry) {
+    if (CONFIG_PATCH_CONTENT_TYPE.equals(entry.getContentType())) {
+      final JsonNode integrationConfig = readConfigUpdate(entry);
+      // Re-apply the config to the integration as it is now
+      return loadIntegration(entry.getTenantAlias())
+          .thenComposeAsync(integration -> {
+            if (integration == null) {
+              logger.warn("Dropping spooled config update[{}] for tenant[{}] without an "
+                  + "integration", entry.getSequence(), entry.getTenantAlias());
+              return CompletableFuture.completedFuture(null);
+            }
+            return putIntegrationConfig(entry.getTenantAlias(), (ObjectNode) integration,
+                integrationConfig, EISpan.NOOP, false)
+                .thenApplyAsync(resp -> checkReplayResponse(entry, resp), executor);
+          }, executor);
+    }
+    final SimpleRequestBuilder requestBuilder = SimpleRequestBuilder.create(entry.getMethod())
+        .setUri(entry.getUri())
+        .setHeader(HttpHeaders.ACCEPT_ENCODING, EIApacheHcUtil.DEFAULT_ACCEPT_ENCODING)
+        .setHeader(HttpHeaders.AUTHORIZATION, getAuthHeader());
+    if (entry.getContentType() != null) {
+      requestBuilder.setBody(entry.getBody(), ContentType.parse(entry.getContentType()));
+    }
+    final CompletableFuture<SimpleHttpResponse> respPromise = new CompletableFuture<>();
+    ioBundle.getHttpAsyncClient().execute(requestBuilder.build(),
+        EIApacheHcUtil.completableFuture(respPromise));
+    return respPromise.thenApplyAsync(resp -> checkReplayResponse(entry, resp), executor);
+  }
+
+  private SimpleHttpResponse checkReplayResponse(EIWriteSpool.Entry entry,
+      SimpleHttpResponse resp) {
+    final int status = resp.getCode();
+    if (status >= HttpStatus.SC_SERVER_ERROR) {
+      throw new IllegalStateException(String.format(Locale.ROOT,
+          "status[%s] received when replaying spooled write for tenant[%s]",
+          status, entry.getTenantAlias()));
+    }
+    if (status > 299) {
+      // Retrying will not help
+      String respBody = "";
+      try {
+        respBody = EIApacheHcUtil.getBodyText(resp);
+      } catch (IOException e) {
+      }
+      logger.warn("Dropping spooled write[{}] for tenant[{}]. status[{}] Response: {}",
+          entry.getSequence(), entry.getTenantAlias(), status, respBody);
+    } else if (Method.PUT.isSame(entry.getMethod())) {
+      clearIntegrationCache(entry.getTenantAlias());
+    }
+    return resp;
+  }
+
+  private interface GraphQLResponseParser<R> {
+
+    R parse(byte[] respBodyBytes) throws IOException;
+
   }
 
 }
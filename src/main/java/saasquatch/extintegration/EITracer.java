@@ -0,0 +1,16 @@
+package saasquatch.extintegration;
+
+import javax.annotation.Nullable;
+
+/**
+ * Creates an {@link EISpan} for each outbound call made through an {@link EIIOBundle}
+ *
+ * @see EIIOBundle#setTracer(EITracer)
+ */
+public interface EITracer {
+
+  EITracer NOOP = (tenantAlias, operation) -> EISpan.NOOP;
+
+  EISpan startSpan(@Nullable String tenantAlias, String operation);
+
+}
@@ -0,0 +1,200 @@
+package saasquatch.extintegration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link EIInvalidationBus} that sends each invalidation as a single UDP datagram to a fixed list
+ * of peers, which may include broadcast addresses. Delivery is best effort, so the integration
+ * cache TTL still bounds staleness when a datagram is lost. Each datagram carries an HMAC-SHA256
+ * over its content keyed with a secret shared by all nodes, and datagrams that fail verification
+ * are dropped. The HMAC does not prevent replaying a captured datagram; a replay is ignored while
+ * the receiver still remembers the invalidation, and otherwise causes an extra reload.
+ */
+public class EIUdpInvalidationBus implements EIInvalidationBus {
+
+  private static final Logger logger = LoggerFactory.getLogger(EIUdpInvalidationBus.class);
+
+  private static final int MAGIC = 0x45494942; // EIIB
+  private static final int MAX_DATAGRAM_SIZE = 1024;
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+  private static final int MAC_LENGTH = 32;
+
+  private final DatagramSocket socket;
+  private final List<SocketAddress> peers;
+  private final SecretKeySpec macKey;
+  private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param bindAddress the local address to receive invalidations on
+   * @param peers the addresses of the other nodes
+   * @param sharedSecret the secret used to authenticate datagrams, which must be the same on every
+   *        node, e.g. the UTF-8 bytes of the client secret
+   */
+  public EIUdpInvalidationBus(InetSocketAddress bindAddress,
+      Collection<? extends SocketAddress> peers, byte[] sharedSecret) {
+    Validate.isTrue(sharedSecret.length > 0, "sharedSecret must not be empty");
+    this.peers = new ArrayList<>(peers);
+    this.macKey = new SecretKeySpec(sharedSecret, MAC_ALGORITHM);
+    try {
+      this.socket = new DatagramSocket(bindAddress);
+      this.socket.setBroadcast(true);
+    } catch (SocketException e) {
+      throw new UncheckedIOException(e);
+    }
+    final Thread receiverThread = new Thread(this::receiveLoop, "ei-invalidation-bus");
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+  }
+
+  public InetSocketAddress getLocalAddress() {
+    return (InetSocketAddress) socket.getLocalSocketAddress();
+  }
+
+  @Override
+  public void publish(Invalidation invalidation) {
+    final byte[] bytes;
+    try {
+      bytes = encode(invalidation);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (SocketAddress peer : peers) {
+      try {
+        socket.send(new DatagramPacket(bytes, bytes.length, peer));
+      } catch (IOException e) {
+        logger.warn("Unable to send {} to [{}]", invalidation, peer, e);
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<Invalidation> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void close() {
+    socket.close();
+    listeners.clear();
+  }
+
+  private void receiveLoop() {
+    final byte[] buf = new byte[MAX_DATAGRAM_SIZE];
+    while (!socket.isClosed()) {
+      final DatagramPacket packet = new DatagramPacket(buf, buf.length);
+      final Invalidation invalidation;
+      try {
+        socket.receive(packet);
+        invalidation = decode(packet.getData(), packet.getOffset(), packet.getLength());
+      } catch (IOException e) {
+        if (!socket.isClosed()) {
+          logger.warn("Unable to receive invalidation", e);
+        }
+        continue;
+      }
+      if (invalidation == null) {
+        continue;
+      }
+      for (Consumer<Invalidation> listener : listeners) {
+        try {
+          listener.accept(invalidation);
+        } catch (RuntimeException e) {
+          logger.warn("Exception encountered delivering {}", invalidation, e);
+        }
+      }
+    }
+  }
+
+  byte[] encode(Invalidation invalidation) throws IOException {
+    final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(64);
+    try (DataOutputStream dataOut = new DataOutputStream(bytesOut)) {
+      dataOut.writeInt(MAGIC);
+      dataOut.writeLong(invalidation.getSequence());
+      writeString(dataOut, invalidation.getSourceId());
+      writeString(dataOut, invalidation.getTenantAlias());
+      dataOut.write(newMac().doFinal(bytesOut.toByteArray()));
+    }
+    if (bytesOut.size() > MAX_DATAGRAM_SIZE) {
+      throw new IllegalArgumentException("Invalidation too large: " + invalidation);
+    }
+    return bytesOut.toByteArray();
+  }
+
+  /**
+   * @return the invalidation, or null if the datagram is not a valid and authentic invalidation
+   */
+  @Nullable
+  Invalidation decode(byte[] bytes, int offset, int length) throws IOException {
+    final int contentLength = length - MAC_LENGTH;
+    if (contentLength < 4) {
+      return null;
+    }
+    final Mac mac = newMac();
+    mac.update(bytes, offset, contentLength);
+    final byte[] expectedMac = mac.doFinal();
+    final byte[] actualMac = Arrays.copyOfRange(bytes, offset + contentLength, offset + length);
+    if (!MessageDigest.isEqual(expectedMac, actualMac)) {
+      logger.debug("Dropping unauthenticated datagram");
+      return null;
+    }
+    try (DataInputStream dataIn =
+        new DataInputStream(new ByteArrayInputStream(bytes, offset, contentLength))) {
+      if (dataIn.readInt() != MAGIC) {
+        return null;
+      }
+      final long sequence = dataIn.readLong();
+      final String sourceId = readString(dataIn);
+      final String tenantAlias = readString(dataIn);
+      return new Invalidation(sourceId, tenantAlias, sequence);
+    }
+  }
+
+  private Mac newMac() {
+    try {
+      final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(macKey);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeString(DataOutputStream dataOut, String s) throws IOException {
+    final byte[] bytes = s.getBytes(UTF_8);
+    dataOut.writeShort(bytes.length);
+    dataOut.write(bytes);
+  }
+
+  private static String readString(DataInputStream dataIn) throws IOException {
+    final byte[] bytes = new byte[dataIn.readUnsignedShort()];
+    dataIn.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+}
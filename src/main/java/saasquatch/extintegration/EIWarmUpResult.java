@@ -0,0 +1,56 @@
+package saasquatch.extintegration;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Timing and failures of each step of {@link EISquatchAuth#warmUp(java.util.Collection, int)}
+ */
+public final class EIWarmUpResult {
+
+  public static final String STEP_ACCESS_TOKEN = "accessToken";
+  public static final String STEP_JWKS = "jwks";
+  public static final String STEP_INTEGRATIONS = "integrations";
+  public static final String STEP_CONNECTIONS = "connections";
+
+  private final Duration totalDuration;
+  // step -> duration
+  private final Map<String, Duration> stepDurations;
+  // step -> failure
+  private final Map<String, Throwable> stepErrors;
+
+  public EIWarmUpResult(Duration totalDuration, Map<String, Duration> stepDurations,
+      Map<String, Throwable> stepErrors) {
+    this.totalDuration = totalDuration;
+    this.stepDurations = Collections.unmodifiableMap(new LinkedHashMap<>(stepDurations));
+    this.stepErrors = Collections.unmodifiableMap(new LinkedHashMap<>(stepErrors));
+  }
+
+  public Duration getTotalDuration() {
+    return totalDuration;
+  }
+
+  public Map<String, Duration> getStepDurations() {
+    return stepDurations;
+  }
+
+  public Map<String, Throwable> getStepErrors() {
+    return stepErrors;
+  }
+
+  /**
+   * @return whether every step succeeded
+   */
+  public boolean isWarm() {
+    return stepErrors.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "EIWarmUpResult{totalDuration=" + totalDuration + ", stepDurations=" + stepDurations
+        + ", stepErrors=" + stepErrors.keySet() + '}';
+  }
+
+}
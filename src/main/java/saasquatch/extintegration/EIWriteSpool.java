@@ -0,0 +1,689 @@
+package saasquatch.extintegration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local write-ahead spool for outbound writes that failed with a retryable error. Entries are
+ * appended to memory-mapped segment files in the given directory and replayed in order per tenant
+ * with exponential backoff, with at most {@code maxConcurrentReplays} replays in flight across all
+ * tenants. An entry that still fails after {@code maxAttempts} attempts, or
+ * that is older than {@code maxAge}, is dropped and handed to the dead letter handler so that it
+ * does not block the tenant's later entries forever. Live entries of the oldest segment are
+ * copied to the active segment, so that segments can be deleted even while an entry is retried.
+ * <p>
+ * Replay is at-least-once: a write that timed out may already have been applied upstream, and an
+ * entry is replayed again if its acknowledgement is lost in a crash.
+ */
+public class EIWriteSpool implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(EIWriteSpool.class);
+
+  public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+  public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+  public static final int DEFAULT_MAX_ATTEMPTS = 20;
+  public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(1);
+  public static final int DEFAULT_MAX_CONCURRENT_REPLAYS = 16;
+
+  private static final String SEGMENT_PREFIX = "spool-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final byte RECORD_ENTRY = 1;
+  private static final byte RECORD_ACK = 2;
+  // length + crc
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final int maxAttempts;
+  private final long maxAgeMillis;
+  private final int maxConcurrentReplays;
+  private final ScheduledExecutorService scheduler;
+  // sequence -> entry, in append order
+  private final NavigableMap<Long, Entry> pending = new TreeMap<>();
+  // sequence -> segment holding the entry
+  private final Map<Long, Segment> entrySegments = new HashMap<>();
+  // segment id -> segment
+  private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+  private final Map<String, TenantState> tenantStates = new HashMap<>();
+  @Nullable
+  private Segment activeSegment;
+  private long nextSequence;
+  private long nextSegmentId;
+  private int inFlightReplays;
+  @Nullable
+  private Function<Entry, CompletionStage<?>> sender;
+  private Consumer<? super Entry> deadLetterHandler = EIWriteSpool::logDeadLetter;
+  private boolean closed;
+
+  public EIWriteSpool(Path directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+  }
+
+  public EIWriteSpool(Path directory, int segmentSize, Duration initialBackoff,
+      Duration maxBackoff) {
+    this(directory, segmentSize, initialBackoff, maxBackoff, DEFAULT_MAX_ATTEMPTS,
+        DEFAULT_MAX_AGE, DEFAULT_MAX_CONCURRENT_REPLAYS);
+  }
+
+  /**
+   * @param maxAttempts how many times an entry is replayed before it is dead lettered
+   * @param maxAge how long after it was appended an entry is dead lettered
+   * @param maxConcurrentReplays how many entries are replayed at a time across all tenants
+   */
+  public EIWriteSpool(Path directory, int segmentSize, Duration initialBackoff,
+      Duration maxBackoff, int maxAttempts, Duration maxAge, int maxConcurrentReplays) {
+    Validate.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+    Validate.isTrue(maxConcurrentReplays > 0, "maxConcurrentReplays must be positive");
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.initialBackoffMillis = initialBackoff.toMillis();
+    this.maxBackoffMillis = maxBackoff.toMillis();
+    this.maxAttempts = maxAttempts;
+    this.maxAgeMillis = maxAge.toMillis();
+    this.maxConcurrentReplays = maxConcurrentReplays;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread t = new Thread(r, "ei-write-spool");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      Files.createDirectories(directory);
+      recover();
+    } catch (IOException e) {
+      scheduler.shutdownNow();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Append a failed write to the spool. The entry is durable once this method returns.
+   */
+  public synchronized Entry append(String tenantAlias, String method, String uri,
+      @Nullable String contentType, byte[] body) {
+    if (closed) {
+      throw new IllegalStateException("spool closed");
+    }
+    final Entry entry = new Entry(nextSequence++, System.currentTimeMillis(), tenantAlias,
+        method, uri, contentType, body);
+    try {
+      writeRecord(RECORD_ENTRY, encodeEntry(entry));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    pending.put(entry.getSequence(), entry);
+    entrySegments.put(entry.getSequence(), activeSegment);
+    compact();
+    final TenantState tenantState =
+        tenantStates.computeIfAbsent(tenantAlias, ignored -> new TenantState());
+    if (!tenantState.inFlight && tenantState.failures == 0) {
+      tenantState.nextAttemptAt = System.currentTimeMillis() + initialBackoffMillis;
+    }
+    scheduleDrain(initialBackoffMillis);
+    return entry;
+  }
+
+  /**
+   * Start replaying spooled entries with the given sender. An entry is acknowledged when the
+   * {@link CompletionStage} returned by the sender completes normally, and retried with backoff
+   * when it completes exceptionally.
+   */
+  public synchronized void startReplay(Function<Entry, CompletionStage<?>> sender) {
+    this.sender = sender;
+    scheduleDrain(0);
+  }
+
+  /**
+   * Set the handler of entries that are dropped after {@code maxAttempts} failed attempts or
+   * {@code maxAge}. The default handler logs them.
+   */
+  public synchronized void setDeadLetterHandler(Consumer<? super Entry> deadLetterHandler) {
+    this.deadLetterHandler = Objects.requireNonNull(deadLetterHandler);
+  }
+
+  /**
+   * Acknowledge the pending entries of the given tenant that match the filter without replaying
+   * them, e.g. when a newer write supersedes them. An entry whose replay is in flight is kept.
+   *
+   * @return the number of discarded entries
+   */
+  public synchronized int discard(String tenantAlias, Predicate<? super Entry> filter) {
+    if (closed) {
+      return 0;
+    }
+    final TenantState tenantState = tenantStates.get(tenantAlias);
+    final List<Entry> discarded = new ArrayList<>();
+    for (Entry entry : pending.values()) {
+      if (entry.getTenantAlias().equals(tenantAlias) && filter.test(entry)
+          && (tenantState == null || !tenantState.inFlight
+              || tenantState.inFlightSequence != entry.getSequence())) {
+        discarded.add(entry);
+      }
+    }
+    for (Entry entry : discarded) {
+      ack(entry);
+    }
+    if (tenantState != null && !tenantState.inFlight && !hasPendingForTenant(tenantAlias)) {
+      tenantStates.remove(tenantAlias);
+    }
+    return discarded.size();
+  }
+
+  /**
+   * @return the sequence the next appended entry will get
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    synchronized (this) {
+      closed = true;
+      for (Segment segment : segments.values()) {
+        if (segment.buffer != null) {
+          segment.buffer.force();
+          segment.buffer = null;
+        }
+      }
+      activeSegment = null;
+    }
+  }
+
+  private void scheduleDrain(long delayMillis) {
+    if (closed || sender == null) {
+      return;
+    }
+    try {
+      scheduler.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      logger.debug("Unable to schedule spool drain", e);
+    }
+  }
+
+  private void drain() {
+    final Map<String, Entry> heads = new LinkedHashMap<>();
+    final List<Entry> deadLetters = new ArrayList<>();
+    final Function<Entry, CompletionStage<?>> sender;
+    final Consumer<? super Entry> deadLetterHandler;
+    synchronized (this) {
+      if (closed || this.sender == null) {
+        return;
+      }
+      sender = this.sender;
+      deadLetterHandler = this.deadLetterHandler;
+      final long now = System.currentTimeMillis();
+      long nextWakeup = Long.MAX_VALUE;
+      for (Entry entry : new ArrayList<>(pending.values())) {
+        if (inFlightReplays >= maxConcurrentReplays) {
+          // The next completion drains again
+          break;
+        }
+        final String tenantAlias = entry.getTenantAlias();
+        if (heads.containsKey(tenantAlias)) {
+          continue;
+        }
+        final TenantState tenantState =
+            tenantStates.computeIfAbsent(tenantAlias, ignored -> new TenantState());
+        if (!tenantState.inFlight && now - entry.getAppendedAt() > maxAgeMillis) {
+          // The tenant's next entry, if any, is considered on the next pass
+          deadLetter(entry, tenantState);
+          deadLetters.add(entry);
+          nextWakeup = 0;
+          heads.put(tenantAlias, null);
+        } else if (tenantState.inFlight) {
+          heads.put(tenantAlias, null);
+        } else if (tenantState.nextAttemptAt > now) {
+          heads.put(tenantAlias, null);
+          nextWakeup = Math.min(nextWakeup, tenantState.nextAttemptAt - now);
+        } else {
+          tenantState.inFlight = true;
+          tenantState.inFlightSequence = entry.getSequence();
+          inFlightReplays++;
+          heads.put(tenantAlias, entry);
+        }
+      }
+      if (nextWakeup != Long.MAX_VALUE) {
+        scheduleDrain(nextWakeup);
+      }
+    }
+    for (Entry entry : deadLetters) {
+      handleDeadLetter(deadLetterHandler, entry);
+    }
+    for (Entry entry : heads.values()) {
+      if (entry == null) {
+        continue;
+      }
+      final CompletionStage<?> result;
+      try {
+        result = sender.apply(entry);
+      } catch (RuntimeException e) {
+        onReplayComplete(entry, e);
+        continue;
+      }
+      result.whenComplete((ignored, ex) -> onReplayComplete(entry, ex));
+    }
+  }
+
+  private void onReplayComplete(Entry entry, @Nullable Throwable ex) {
+    final Consumer<? super Entry> deadLetterHandler;
+    synchronized (this) {
+      final TenantState tenantState = tenantStates.get(entry.getTenantAlias());
+      tenantState.inFlight = false;
+      inFlightReplays--;
+      if (ex == null) {
+        tenantState.failures = 0;
+        tenantState.nextAttemptAt = 0;
+        if (!closed) {
+          ack(entry);
+        }
+        if (!hasPendingForTenant(entry.getTenantAlias())) {
+          tenantStates.remove(entry.getTenantAlias());
+        }
+        scheduleDrain(0);
+        return;
+      }
+      if (++tenantState.failures < maxAttempts || closed) {
+        final long backoff = nextBackoffMillis(tenantState.failures - 1);
+        tenantState.nextAttemptAt = System.currentTimeMillis() + backoff;
+        logger.warn("Replay of spooled write[{}] for tenant[{}] failed. Retrying in {}ms",
+            entry.getSequence(), entry.getTenantAlias(), backoff, ex);
+        // Let other tenants use the freed replay slot
+        scheduleDrain(0);
+        return;
+      }
+      logger.warn("Replay of spooled write[{}] for tenant[{}] failed {} times",
+          entry.getSequence(), entry.getTenantAlias(), tenantState.failures, ex);
+      deadLetter(entry, tenantState);
+      deadLetterHandler = this.deadLetterHandler;
+      scheduleDrain(0);
+    }
+    handleDeadLetter(deadLetterHandler, entry);
+  }
+
+  /**
+   * Drop the given head entry of its tenant, so the tenant's next entry starts afresh
+   */
+  private void deadLetter(Entry entry, TenantState tenantState) {
+    tenantState.failures = 0;
+    tenantState.nextAttemptAt = 0;
+    ack(entry);
+    if (!tenantState.inFlight && !hasPendingForTenant(entry.getTenantAlias())) {
+      tenantStates.remove(entry.getTenantAlias());
+    }
+  }
+
+  private static void handleDeadLetter(Consumer<? super Entry> deadLetterHandler, Entry entry) {
+    try {
+      deadLetterHandler.accept(entry);
+    } catch (RuntimeException e) {
+      logger.error("Dead letter handler failed for spooled write[{}]", entry.getSequence(), e);
+    }
+  }
+
+  private static void logDeadLetter(Entry entry) {
+    logger.error("Dropping spooled write[{}] for tenant[{}]: {} {}", entry.getSequence(),
+        entry.getTenantAlias(), entry.getMethod(), entry.getUri());
+  }
+
+  private long nextBackoffMillis(int failures) {
+    final long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(failures, 20));
+    // Jitter to avoid every node retrying at the same time
+    return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+  }
+
+  private boolean hasPendingForTenant(String tenantAlias) {
+    for (Entry entry : pending.values()) {
+      if (entry.getTenantAlias().equals(tenantAlias)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void ack(Entry entry) {
+    if (pending.remove(entry.getSequence()) == null) {
+      return;
+    }
+    try {
+      writeRecord(RECORD_ACK, ByteBuffer.allocate(8).putLong(entry.getSequence()).array());
+    } catch (IOException e) {
+      // The entry may be replayed again after a restart
+      logger.warn("Unable to record ack for spooled write[{}]", entry.getSequence(), e);
+    }
+    final Segment owner = entrySegments.remove(entry.getSequence());
+    if (owner != null) {
+      owner.liveEntries--;
+    }
+    compact();
+  }
+
+  /**
+   * Delete fully acknowledged segments. Only a prefix of the segments can be deleted, since ack
+   * records for older entries may live in newer segments. The few live entries of a mostly
+   * acknowledged sealed segment are copied to the active segment first, so that an entry that is
+   * retried for a long time does not keep every later segment alive.
+   */
+  private void compact() {
+    // Segments created while relocating are left for a later pass
+    final long sealedBefore = segments.isEmpty() ? 0 : segments.lastKey();
+    while (!segments.isEmpty()) {
+      final Map.Entry<Long, Segment> first = segments.firstEntry();
+      final Segment segment = first.getValue();
+      if (first.getKey() < sealedBefore && segment != activeSegment && segment.liveEntries > 0
+          && segment.liveEntries * 2 <= segment.totalEntries) {
+        try {
+          relocateLiveEntries(segment);
+        } catch (IOException e) {
+          logger.warn("Unable to relocate live entries of spool segment[{}]", segment.path, e);
+          break;
+        }
+      }
+      if (segment.liveEntries > 0 || (segment == activeSegment && !pending.isEmpty())) {
+        break;
+      }
+      if (segment == activeSegment) {
+        activeSegment = null;
+      }
+      segment.buffer = null;
+      try {
+        Files.deleteIfExists(segment.path);
+      } catch (IOException e) {
+        logger.warn("Unable to delete spool segment[{}]", segment.path, e);
+        break;
+      }
+      segments.remove(first.getKey());
+    }
+  }
+
+  /**
+   * Append copies of the live entries of the given sealed segment to the active segment
+   */
+  private void relocateLiveEntries(Segment segment) throws IOException {
+    final List<Entry> liveEntries = new ArrayList<>();
+    for (Map.Entry<Long, Segment> entrySegment : entrySegments.entrySet()) {
+      if (entrySegment.getValue() == segment) {
+        liveEntries.add(pending.get(entrySegment.getKey()));
+      }
+    }
+    for (Entry entry : liveEntries) {
+      writeRecord(RECORD_ENTRY, encodeEntry(entry));
+      entrySegments.put(entry.getSequence(), activeSegment);
+      segment.liveEntries--;
+    }
+  }
+
+  private void writeRecord(byte type, byte[] payload) throws IOException {
+    final int recordSize = RECORD_HEADER_SIZE + 1 + payload.length;
+    // Leave room for the zero length terminator
+    if (activeSegment == null || activeSegment.buffer.remaining() < recordSize + 4) {
+      rotate(recordSize + 4);
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload, 0, payload.length);
+    final MappedByteBuffer buffer = activeSegment.buffer;
+    buffer.putInt(1 + payload.length)
+        .putInt((int) crc.getValue())
+        .put(type)
+        .put(payload);
+    buffer.force();
+    if (type == RECORD_ENTRY) {
+      activeSegment.liveEntries++;
+      activeSegment.totalEntries++;
+    }
+  }
+
+  private void rotate(int minSize) throws IOException {
+    if (activeSegment != null) {
+      activeSegment.buffer.force();
+      activeSegment.buffer = null;
+    }
+    final Path path = directory.resolve(String.format(Locale.ROOT, "%s%020d%s",
+        SEGMENT_PREFIX, nextSegmentId, SEGMENT_SUFFIX));
+    final Segment segment = new Segment(path);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          Math.max(segmentSize, minSize));
+    }
+    segments.put(nextSegmentId++, segment);
+    activeSegment = segment;
+  }
+
+  private void recover() throws IOException {
+    final NavigableMap<Long, Path> segmentPaths = new TreeMap<>();
+    try (DirectoryStream<Path> dirStream =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : dirStream) {
+        final String fileName = path.getFileName().toString();
+        final String segmentId = StringUtils.removeEnd(
+            StringUtils.removeStart(fileName, SEGMENT_PREFIX), SEGMENT_SUFFIX);
+        try {
+          segmentPaths.put(Long.parseLong(segmentId), path);
+        } catch (NumberFormatException e) {
+          logger.warn("Ignoring unrecognized spool file[{}]", path);
+        }
+      }
+    }
+    for (Map.Entry<Long, Path> segmentPath : segmentPaths.entrySet()) {
+      final Segment segment = new Segment(segmentPath.getValue());
+      segments.put(segmentPath.getKey(), segment);
+      nextSegmentId = Math.max(nextSegmentId, segmentPath.getKey() + 1);
+      final ByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        final int length = buffer.getInt();
+        final int expectedCrc = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          break;
+        }
+        final byte type = buffer.get();
+        final byte[] payload = new byte[length - 1];
+        buffer.get(payload);
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        if ((int) crc.getValue() != expectedCrc) {
+          logger.warn("Torn record found in spool segment[{}]", segment.path);
+          break;
+        }
+        if (type == RECORD_ENTRY) {
+          final Entry entry = decodeEntry(ByteBuffer.wrap(payload));
+          // A relocated entry supersedes its earlier copy
+          final Segment previousOwner = entrySegments.put(entry.getSequence(), segment);
+          if (previousOwner != null) {
+            previousOwner.liveEntries--;
+          }
+          pending.put(entry.getSequence(), entry);
+          segment.liveEntries++;
+          segment.totalEntries++;
+          nextSequence = Math.max(nextSequence, entry.getSequence() + 1);
+        } else if (type == RECORD_ACK) {
+          final long sequence = ByteBuffer.wrap(payload).getLong();
+          final Segment owner = entrySegments.remove(sequence);
+          if (pending.remove(sequence) != null && owner != null) {
+            owner.liveEntries--;
+          }
+        }
+      }
+    }
+    compact();
+    if (!pending.isEmpty()) {
+      logger.info("Recovered {} spooled writes from [{}]", pending.size(), directory);
+    }
+  }
+
+  private static byte[] encodeEntry(Entry entry) throws IOException {
+    final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(entry.body.length + 256);
+    try (DataOutputStream dataOut = new DataOutputStream(bytesOut)) {
+      dataOut.writeLong(entry.getSequence());
+      dataOut.writeLong(entry.getAppendedAt());
+      writeString(dataOut, entry.getTenantAlias());
+      writeString(dataOut, entry.getMethod());
+      writeString(dataOut, entry.getUri());
+      writeString(dataOut, entry.getContentType());
+      dataOut.writeInt(entry.body.length);
+      dataOut.write(entry.body);
+    }
+    return bytesOut.toByteArray();
+  }
+
+  private static Entry decodeEntry(ByteBuffer buffer) {
+    final long sequence = buffer.getLong();
+    final long appendedAt = buffer.getLong();
+    final String tenantAlias = readString(buffer);
+    final String method = readString(buffer);
+    final String uri = readString(buffer);
+    final String contentType = readString(buffer);
+    final byte[] body = new byte[buffer.getInt()];
+    buffer.get(body);
+    return new Entry(sequence, appendedAt, tenantAlias, method, uri, contentType, body);
+  }
+
+  private static void writeString(DataOutputStream dataOut, @Nullable String s)
+      throws IOException {
+    if (s == null) {
+      dataOut.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = s.getBytes(UTF_8);
+    dataOut.writeInt(bytes.length);
+    dataOut.write(bytes);
+  }
+
+  @Nullable
+  private static String readString(ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  public static final class Entry {
+
+    private final long sequence;
+    private final long appendedAt;
+    private final String tenantAlias;
+    private final String method;
+    private final String uri;
+    private final String contentType;
+    private final byte[] body;
+
+    Entry(long sequence, long appendedAt, String tenantAlias, String method, String uri,
+        @Nullable String contentType, byte[] body) {
+      this.sequence = sequence;
+      this.appendedAt = appendedAt;
+      this.tenantAlias = tenantAlias;
+      this.method = method;
+      this.uri = uri;
+      this.contentType = contentType;
+      this.body = body;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+
+    /**
+     * @return the epoch millis at which the entry was first appended
+     */
+    public long getAppendedAt() {
+      return appendedAt;
+    }
+
+    public String getTenantAlias() {
+      return tenantAlias;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    public String getUri() {
+      return uri;
+    }
+
+    @Nullable
+    public String getContentType() {
+      return contentType;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+  }
+
+  private static final class Segment {
+
+    final Path path;
+    @Nullable
+    MappedByteBuffer buffer;
+    int liveEntries;
+    int totalEntries;
+
+    Segment(Path path) {
+      this.path = path;
+    }
+
+  }
+
+  private static final class TenantState {
+
+    boolean inFlight;
+    long inFlightSequence;
+    int failures;
+    long nextAttemptAt;
+
+  }
+
+}